@@ -0,0 +1,42 @@
+package com.github.tenants.plugin.loadtest;
+
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 手写租户条件的订单mapper，sql与插件改写 {@link OrderMapper} 后的结果等价，作为压测的基准。
+ *
+ * @author xierh
+ * @since 2026/10/19 23:20
+ */
+public interface BaselineOrderMapper extends OrderOperations {
+
+    @Override
+    @Select("SELECT id, customer_id, status, amount FROM t_order WHERE id = #{id} AND t_order.tenant_id = #{tenantId}")
+    Map<String, Object> selectById(@Param("tenantId") long tenantId, @Param("id") long id);
+
+    @Override
+    @Select("SELECT o.id, o.customer_id, o.amount FROM t_order o WHERE o.status = #{status} AND o.tenant_id = #{tenantId} "
+            + "ORDER BY o.id DESC LIMIT 20")
+    List<Map<String, Object>> listByStatus(@Param("tenantId") long tenantId, @Param("status") int status);
+
+    @Override
+    @Select("SELECT o.id, SUM(i.qty) AS qty FROM t_order o JOIN t_order_item i ON i.order_id = o.id AND i.tenant_id = #{tenantId} "
+            + "WHERE o.customer_id = #{customerId} AND o.tenant_id = #{tenantId} GROUP BY o.id ORDER BY o.id DESC LIMIT 20")
+    List<Map<String, Object>> sumItemsByCustomer(@Param("tenantId") long tenantId, @Param("customerId") long customerId);
+
+    @Override
+    @Update("UPDATE t_order SET status = #{status} WHERE id = #{id}")
+    int updateStatus(@Param("tenantId") long tenantId, @Param("id") long id, @Param("status") int status);
+
+    @Override
+    @Insert("INSERT INTO t_order (customer_id, status, amount, tenant_id) VALUES (#{customerId}, #{status}, #{amount}, #{tenantId})")
+    int insert(@Param("tenantId") long tenantId, @Param("customerId") long customerId, @Param("status") int status,
+               @Param("amount") BigDecimal amount);
+}
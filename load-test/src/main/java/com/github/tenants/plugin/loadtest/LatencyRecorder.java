@@ -0,0 +1,91 @@
+package com.github.tenants.plugin.loadtest;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 记录单个工作线程的每次操作耗时，压测结束后合并计算百分位数。
+ * 每个工作线程使用各自的记录器，记录时无需同步，不会在压测中引入额外的竞争。
+ *
+ * @author xierh
+ * @since 2026/10/19 23:20
+ */
+public class LatencyRecorder {
+
+    private long[] nanos = new long[1024];
+
+    private int size;
+
+    private long errors;
+
+    public void record(long latencyNanos) {
+        if (size == nanos.length) {
+            nanos = Arrays.copyOf(nanos, size * 2);
+        }
+        nanos[size++] = latencyNanos;
+    }
+
+    public void recordError() {
+        errors++;
+    }
+
+    /**
+     * 合并多个工作线程的记录。
+     *
+     * @param recorders 工作线程的记录器
+     * @return 合并后的统计
+     */
+    public static Summary merge(List<LatencyRecorder> recorders) {
+        int total = 0;
+        long errors = 0;
+        for (LatencyRecorder recorder : recorders) {
+            total += recorder.size;
+            errors += recorder.errors;
+        }
+        long[] merged = new long[total];
+        int offset = 0;
+        for (LatencyRecorder recorder : recorders) {
+            System.arraycopy(recorder.nanos, 0, merged, offset, recorder.size);
+            offset += recorder.size;
+        }
+        Arrays.sort(merged);
+        return new Summary(merged, errors);
+    }
+
+    /**
+     * 合并后的耗时统计。
+     */
+    public static class Summary {
+
+        private final long[] sorted;
+
+        private final long errors;
+
+        private Summary(long[] sorted, long errors) {
+            this.sorted = sorted;
+            this.errors = errors;
+        }
+
+        public long getCount() {
+            return sorted.length;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        /**
+         * 获取耗时的百分位数。
+         *
+         * @param percentile 百分位，取值 0~1
+         * @return 百分位数（微秒）
+         */
+        public double percentileMicros(double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.min(sorted.length - 1, Math.max(0, Math.ceil(percentile * sorted.length) - 1));
+            return sorted[index] / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.github.tenants.plugin.loadtest;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * 固定大小的连接池，连接关闭时归还到池中。
+ * <p>
+ * MyBatis 自带的 PooledDataSource 在 synchronized 中等待空闲连接，大量虚拟线程同时等待时会占住所有载体线程，
+ * 因此压测使用基于 BlockingQueue 的连接池，等待时虚拟线程可以让出载体线程。
+ *
+ * @author xierh
+ * @since 2026/10/19 23:20
+ */
+public class LoadTestDataSource implements DataSource {
+
+    private final BlockingQueue<Connection> idle;
+
+    private final List<Connection> connections = new ArrayList<>();
+
+    public LoadTestDataSource(String url, int size) throws SQLException {
+        this.idle = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) {
+            Connection connection = DriverManager.getConnection(url, "sa", "");
+            connections.add(connection);
+            idle.add(connection);
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Connection connection;
+        try {
+            connection = idle.poll(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted while waiting for a connection", e);
+        }
+        if (connection == null) {
+            throw new SQLException("timed out waiting for a connection");
+        }
+        connection.setAutoCommit(true);
+        return this.borrow(connection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return this.getConnection();
+    }
+
+    /**
+     * 包装借出的连接，关闭时归还到池中，每次借出只能归还一次。
+     */
+    private Connection borrow(Connection connection) {
+        boolean[] closed = {false};
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed[0]) {
+                        closed[0] = true;
+                        idle.add(connection);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed[0];
+                default:
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        });
+    }
+
+    /**
+     * 关闭池中的所有连接。
+     */
+    public void shutdown() {
+        for (Connection connection : connections) {
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+                // 压测结束时关闭失败不影响结果
+            }
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        throw new SQLException("not a wrapper");
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return false;
+    }
+}
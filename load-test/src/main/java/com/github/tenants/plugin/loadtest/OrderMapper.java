@@ -0,0 +1,41 @@
+package com.github.tenants.plugin.loadtest;
+
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 不写租户条件的订单mapper，租户条件与租户字段由 TenantSqlInterceptor 添加。
+ *
+ * @author xierh
+ * @since 2026/10/19 23:20
+ */
+public interface OrderMapper extends OrderOperations {
+
+    @Override
+    @Select("SELECT id, customer_id, status, amount FROM t_order WHERE id = #{id}")
+    Map<String, Object> selectById(@Param("tenantId") long tenantId, @Param("id") long id);
+
+    @Override
+    @Select("SELECT o.id, o.customer_id, o.amount FROM t_order o WHERE o.status = #{status} ORDER BY o.id DESC LIMIT 20")
+    List<Map<String, Object>> listByStatus(@Param("tenantId") long tenantId, @Param("status") int status);
+
+    @Override
+    @Select("SELECT o.id, SUM(i.qty) AS qty FROM t_order o JOIN t_order_item i ON i.order_id = o.id "
+            + "WHERE o.customer_id = #{customerId} GROUP BY o.id ORDER BY o.id DESC LIMIT 20")
+    List<Map<String, Object>> sumItemsByCustomer(@Param("tenantId") long tenantId, @Param("customerId") long customerId);
+
+    @Override
+    @Update("UPDATE t_order SET status = #{status} WHERE id = #{id}")
+    int updateStatus(@Param("tenantId") long tenantId, @Param("id") long id, @Param("status") int status);
+
+    @Override
+    @Insert("INSERT INTO t_order (customer_id, status, amount) VALUES (#{customerId}, #{status}, #{amount})")
+    int insert(@Param("tenantId") long tenantId, @Param("customerId") long customerId, @Param("status") int status,
+               @Param("amount") BigDecimal amount);
+}
@@ -0,0 +1,26 @@
+package com.github.tenants.plugin.loadtest;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 压测负载中的订单操作，由两个mapper分别实现：
+ * {@link OrderMapper} 不写租户条件，由插件改写；{@link BaselineOrderMapper} 手写租户条件，不经过插件。
+ * 两者访问的数据相同，吞吐量与耗时的差异即为插件的开销。
+ *
+ * @author xierh
+ * @since 2026/10/19 23:20
+ */
+public interface OrderOperations {
+
+    Map<String, Object> selectById(long tenantId, long id);
+
+    List<Map<String, Object>> listByStatus(long tenantId, int status);
+
+    List<Map<String, Object>> sumItemsByCustomer(long tenantId, long customerId);
+
+    int updateStatus(long tenantId, long id, int status);
+
+    int insert(long tenantId, long customerId, int status, BigDecimal amount);
+}
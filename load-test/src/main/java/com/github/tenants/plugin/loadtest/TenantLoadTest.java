@@ -0,0 +1,415 @@
+package com.github.tenants.plugin.loadtest;
+
+import com.github.tenants.plugin.TenantProperties;
+import com.github.tenants.plugin.cache.PluginCache;
+import com.github.tenants.plugin.cache.SqlRewriteCache;
+import com.github.tenants.plugin.core.TenantUserIdentity;
+import com.github.tenants.plugin.core.interceptor.TenantSqlInterceptor;
+import com.github.tenants.plugin.core.telemetry.TenantTelemetry;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 多租户插件的端到端压测。
+ * <p>
+ * 使用 MySQL 模式的 H2 内存数据库与示例mapper，以不同的线程数（平台线程与虚拟线程）执行混合负载：
+ * 按主键查询、条件分页查询、关联聚合查询、更新与插入。每个场景分别执行两次：
+ * <ul>
+ *     <li>baseline：手写租户条件的 {@link BaselineOrderMapper}，不注册拦截器；</li>
+ *     <li>tenant：不写租户条件的 {@link OrderMapper}，由 {@link TenantSqlInterceptor} 改写。</li>
+ * </ul>
+ * 两者访问的数据相同，输出吞吐量、耗时百分位数以及两者的差异，即插件（静态 PluginCache、租户责任链、sql改写）的开销。
+ * 负载中包含插入，因此每次运行前都会重新写入数据；两种模式的先后顺序在场景之间交替，避免总由同一方承担预热与数据增长的影响。
+ * <p>
+ * 参数（均可省略）：
+ * <pre>
+ * --threads=1,8,32          线程数，逗号分隔，默认为 1、CPU核数、CPU核数的4倍
+ * --executors=platform,virtual  使用的线程类型
+ * --duration=10             每个场景的测量时长（秒）
+ * --warmup=3                每个场景的预热时长（秒）
+ * --tenants=100             租户数量
+ * --rows=200                每个租户的订单数量
+ * --pool=32                 连接池大小
+ * --telemetry=false         是否同时开启插件的执行统计
+ * </pre>
+ *
+ * @author xierh
+ * @since 2026/10/19 23:20
+ */
+public class TenantLoadTest {
+
+    private static final String URL = "jdbc:h2:mem:tenant_load;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    /**
+     * 各操作的权重（百分比）：按主键查询、条件分页查询、关联聚合查询、更新、插入
+     */
+    private static final int[] WEIGHTS = {50, 25, 10, 10, 5};
+
+    private static final int CUSTOMERS = 50;
+
+    /**
+     * 工作线程当前操作的租户，由租户责任链中的 {@link WorkerTenantIdentity} 读取
+     */
+    private static final ThreadLocal<Long> CURRENT_TENANT = new ThreadLocal<>();
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        LoadTestDataSource dataSource = new LoadTestDataSource(URL, options.pool);
+        try {
+            createSchema(dataSource);
+            SqlSessionFactory baselineFactory = buildSqlSessionFactory(dataSource, BaselineOrderMapper.class);
+            SqlSessionFactory tenantFactory = buildSqlSessionFactory(dataSource, OrderMapper.class);
+            PluginCache pluginCache = createPluginCache(tenantFactory, options);
+            tenantFactory.getConfiguration().addInterceptor(new TenantSqlInterceptor());
+
+            System.out.printf("jdk %s, %d cpus, %d tenants x %d orders, pool %d, warmup %ds, duration %ds%n",
+                    Runtime.version(), Runtime.getRuntime().availableProcessors(), options.tenants, options.rows,
+                    options.pool, options.warmup, options.duration);
+            System.out.printf("%-9s %7s  %-9s %12s %10s %10s %10s %10s %8s%n",
+                    "executor", "threads", "mode", "ops/s", "p50(us)", "p90(us)", "p99(us)", "p99.9(us)", "errors");
+            int scenario = 0;
+            for (String executor : options.executors) {
+                for (int threads : options.threads) {
+                    Result baseline;
+                    Result tenant;
+                    if (scenario++ % 2 == 0) {
+                        baseline = run(dataSource, baselineFactory, BaselineOrderMapper.class, executor, threads, options);
+                        tenant = run(dataSource, tenantFactory, OrderMapper.class, executor, threads, options);
+                    } else {
+                        tenant = run(dataSource, tenantFactory, OrderMapper.class, executor, threads, options);
+                        baseline = run(dataSource, baselineFactory, BaselineOrderMapper.class, executor, threads, options);
+                    }
+                    print(executor, threads, "baseline", baseline);
+                    print(executor, threads, "tenant", tenant);
+                    printOverhead(baseline, tenant);
+                }
+            }
+
+            SqlRewriteCache sqlRewriteCache = pluginCache.getTenantSqlCompiler().getSqlRewriteCache();
+            System.out.printf("rewrite cache: %d compiled, %d failed%n", sqlRewriteCache.size(), sqlRewriteCache.failedSize());
+            TenantTelemetry tenantTelemetry = pluginCache.getTenantTelemetry();
+            if (tenantTelemetry != null) {
+                System.out.printf("telemetry: %d statements, %d errors, p99 %dus%n", tenantTelemetry.getCount(),
+                        tenantTelemetry.getErrorCount(), tenantTelemetry.getLatencyPercentile(0.99));
+            }
+        } finally {
+            dataSource.shutdown();
+        }
+    }
+
+    /**
+     * 创建表与索引。
+     */
+    private static void createSchema(LoadTestDataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE t_order (id BIGINT AUTO_INCREMENT PRIMARY KEY, tenant_id BIGINT NOT NULL, "
+                    + "customer_id BIGINT NOT NULL, status INT NOT NULL, amount DECIMAL(12, 2) NOT NULL)");
+            statement.execute("CREATE INDEX ix_order_tenant_status ON t_order (tenant_id, status)");
+            statement.execute("CREATE INDEX ix_order_tenant_customer ON t_order (tenant_id, customer_id)");
+            statement.execute("CREATE TABLE t_order_item (id BIGINT AUTO_INCREMENT PRIMARY KEY, tenant_id BIGINT NOT NULL, "
+                    + "order_id BIGINT NOT NULL, sku VARCHAR(32) NOT NULL, qty INT NOT NULL)");
+            statement.execute("CREATE INDEX ix_item_tenant_order ON t_order_item (tenant_id, order_id)");
+        }
+    }
+
+    /**
+     * 清空两张表后按租户重新写入订单及其明细，使每次运行都从相同的数据开始。
+     */
+    private static void loadData(LoadTestDataSource dataSource, Options options) throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("TRUNCATE TABLE t_order_item");
+            statement.execute("TRUNCATE TABLE t_order");
+            connection.setAutoCommit(false);
+            long orders = (long) options.tenants * options.rows;
+            try (PreparedStatement order = connection.prepareStatement(
+                    "INSERT INTO t_order (id, tenant_id, customer_id, status, amount) VALUES (?, ?, ?, ?, ?)");
+                 PreparedStatement item = connection.prepareStatement(
+                         "INSERT INTO t_order_item (tenant_id, order_id, sku, qty) VALUES (?, ?, ?, ?)")) {
+                // 订单 id 对租户数取模即为租户，压测时无需查询即可选出属于当前租户的订单
+                for (long id = 1; id <= orders; id++) {
+                    long tenantId = (id - 1) % options.tenants + 1;
+                    order.setLong(1, id);
+                    order.setLong(2, tenantId);
+                    order.setLong(3, id % CUSTOMERS);
+                    order.setInt(4, (int) (id % 5));
+                    order.setBigDecimal(5, BigDecimal.valueOf(id % 100000, 2));
+                    order.addBatch();
+                    for (int line = 0; line < 2; line++) {
+                        item.setLong(1, tenantId);
+                        item.setLong(2, id);
+                        item.setString(3, "SKU-" + (id + line) % 1000);
+                        item.setInt(4, line + 1);
+                        item.addBatch();
+                    }
+                    if (id % 1000 == 0) {
+                        order.executeBatch();
+                        item.executeBatch();
+                    }
+                }
+                order.executeBatch();
+                item.executeBatch();
+            }
+            statement.execute("ALTER TABLE t_order ALTER COLUMN id RESTART WITH " + (orders + 1));
+            connection.commit();
+        }
+    }
+
+    private static SqlSessionFactory buildSqlSessionFactory(LoadTestDataSource dataSource, Class<?> mapperType) {
+        Configuration configuration = new Configuration(new Environment("load-test", new JdbcTransactionFactory(), dataSource));
+        configuration.addMapper(mapperType);
+        return new SqlSessionFactoryBuilder().build(configuration);
+    }
+
+    /**
+     * 以指定模式直接构造 PluginCache，租户责任链中第一个实现总是未命中，由第二个实现提供租户。
+     */
+    private static PluginCache createPluginCache(SqlSessionFactory tenantFactory, Options options) {
+        TenantProperties tenantProperties = new TenantProperties();
+        tenantProperties.setScanMode(TenantProperties.TenantMode.ASSIGN);
+        tenantProperties.setTargetTables(new ArrayList<>(List.of("t_order", "t_order_item")));
+        tenantProperties.setTargetColumns(List.of("tenant_id"));
+        tenantProperties.getTelemetry().setEnabled(options.telemetry);
+        TenantUserIdentity tenantUserIdentity = new HeaderTenantIdentity();
+        tenantUserIdentity.setNext(new WorkerTenantIdentity());
+        PluginCache pluginCache = new PluginCache(List.of(tenantFactory), tenantProperties, tenantUserIdentity);
+        pluginCache.publish();
+        return pluginCache;
+    }
+
+    /**
+     * 重新写入数据后先预热再测量一个场景。
+     */
+    private static Result run(LoadTestDataSource dataSource, SqlSessionFactory sqlSessionFactory,
+                              Class<? extends OrderOperations> mapperType, String executor, int threads, Options options)
+            throws InterruptedException, SQLException {
+        loadData(dataSource, options);
+        runPhase(sqlSessionFactory, mapperType, executor, threads, options, options.warmup);
+        return runPhase(sqlSessionFactory, mapperType, executor, threads, options, options.duration);
+    }
+
+    private static Result runPhase(SqlSessionFactory sqlSessionFactory, Class<? extends OrderOperations> mapperType, String executor,
+                                   int threads, Options options, int seconds) throws InterruptedException {
+        ThreadFactory threadFactory = "virtual".equals(executor)
+                ? Thread.ofVirtual().name("load-virtual-", 0).factory()
+                : Thread.ofPlatform().name("load-platform-", 0).factory();
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicReference<Throwable> firstError = new AtomicReference<>();
+        List<LatencyRecorder> recorders = new ArrayList<>();
+        List<Thread> workers = new ArrayList<>();
+        long[] deadline = new long[1];
+        for (int i = 0; i < threads; i++) {
+            LatencyRecorder recorder = new LatencyRecorder();
+            recorders.add(recorder);
+            workers.add(threadFactory.newThread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                work(sqlSessionFactory, mapperType, options, deadline[0], recorder, firstError);
+            }));
+        }
+        workers.forEach(Thread::start);
+        long begin = System.nanoTime();
+        deadline[0] = begin + TimeUnit.SECONDS.toNanos(seconds);
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+        if (firstError.get() != null) {
+            System.err.println("first error: " + firstError.get());
+        }
+        return new Result(LatencyRecorder.merge(recorders), elapsed);
+    }
+
+    /**
+     * 工作线程的循环：每次随机选择租户与操作，在独立的 SqlSession 中执行。
+     */
+    private static void work(SqlSessionFactory sqlSessionFactory, Class<? extends OrderOperations> mapperType, Options options,
+                             long deadline, LatencyRecorder recorder, AtomicReference<Throwable> firstError) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            long tenantId = 1 + random.nextInt(options.tenants);
+            int operation = pickOperation(random.nextInt(100));
+            long begin = System.nanoTime();
+            CURRENT_TENANT.set(tenantId);
+            try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+                execute(sqlSession.getMapper(mapperType), operation, tenantId, random, options);
+            } catch (RuntimeException e) {
+                recorder.recordError();
+                firstError.compareAndSet(null, e);
+                continue;
+            } finally {
+                CURRENT_TENANT.remove();
+            }
+            recorder.record(System.nanoTime() - begin);
+        }
+    }
+
+    private static int pickOperation(int roll) {
+        int operation = 0;
+        while (roll >= WEIGHTS[operation]) {
+            roll -= WEIGHTS[operation];
+            operation++;
+        }
+        return operation;
+    }
+
+    private static void execute(OrderOperations mapper, int operation, long tenantId, ThreadLocalRandom random, Options options) {
+        switch (operation) {
+            case 0:
+                mapper.selectById(tenantId, tenantId + (long) options.tenants * random.nextInt(options.rows));
+                break;
+            case 1:
+                mapper.listByStatus(tenantId, random.nextInt(5));
+                break;
+            case 2:
+                mapper.sumItemsByCustomer(tenantId, random.nextInt(CUSTOMERS));
+                break;
+            case 3:
+                mapper.updateStatus(tenantId, tenantId + (long) options.tenants * random.nextInt(options.rows), random.nextInt(5));
+                break;
+            default:
+                mapper.insert(tenantId, random.nextInt(CUSTOMERS), random.nextInt(5), BigDecimal.valueOf(random.nextInt(100000), 2));
+        }
+    }
+
+    private static void print(String executor, int threads, String mode, Result result) {
+        LatencyRecorder.Summary summary = result.summary;
+        System.out.printf("%-9s %7d  %-9s %12.1f %10.1f %10.1f %10.1f %10.1f %8d%n", executor, threads, mode, result.throughput(),
+                summary.percentileMicros(0.5), summary.percentileMicros(0.9), summary.percentileMicros(0.99),
+                summary.percentileMicros(0.999), summary.getErrors());
+    }
+
+    private static void printOverhead(Result baseline, Result tenant) {
+        System.out.printf("%-9s %7s  %-9s %+11.1f%% %+10.1f %+10.1f %+10.1f %+10.1f%n", "", "", "overhead",
+                (tenant.throughput() / baseline.throughput() - 1) * 100,
+                tenant.summary.percentileMicros(0.5) - baseline.summary.percentileMicros(0.5),
+                tenant.summary.percentileMicros(0.9) - baseline.summary.percentileMicros(0.9),
+                tenant.summary.percentileMicros(0.99) - baseline.summary.percentileMicros(0.99),
+                tenant.summary.percentileMicros(0.999) - baseline.summary.percentileMicros(0.999));
+    }
+
+    /**
+     * 一个场景的测量结果。
+     */
+    private static class Result {
+
+        private final LatencyRecorder.Summary summary;
+
+        private final long elapsedNanos;
+
+        private Result(LatencyRecorder.Summary summary, long elapsedNanos) {
+            this.summary = summary;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        private double throughput() {
+            return summary.getCount() * 1e9 / elapsedNanos;
+        }
+    }
+
+    /**
+     * 模拟责任链中未命中的实现，例如请求头中没有携带租户。
+     */
+    private static class HeaderTenantIdentity extends TenantUserIdentity {
+
+        @Override
+        public Long getTenantUserIdentity() {
+            return null;
+        }
+    }
+
+    /**
+     * 提供工作线程当前操作的租户。
+     */
+    private static class WorkerTenantIdentity extends TenantUserIdentity {
+
+        @Override
+        public Long getTenantUserIdentity() {
+            return CURRENT_TENANT.get();
+        }
+    }
+
+    /**
+     * 压测参数。
+     */
+    private static class Options {
+
+        private int[] threads;
+
+        private List<String> executors = List.of("platform", "virtual");
+
+        private int duration = 10;
+
+        private int warmup = 3;
+
+        private int tenants = 100;
+
+        private int rows = 200;
+
+        private int pool = 32;
+
+        private boolean telemetry = false;
+
+        private static Options parse(String[] args) {
+            Options options = new Options();
+            int cpus = Runtime.getRuntime().availableProcessors();
+            options.threads = cpus == 1 ? new int[]{1, 4} : new int[]{1, cpus, cpus * 4};
+            for (String arg : args) {
+                int split = arg.indexOf('=');
+                if (!arg.startsWith("--") || split < 0) {
+                    throw new IllegalArgumentException("unrecognized argument " + arg + ", expected --name=value");
+                }
+                String name = arg.substring(2, split);
+                String value = arg.substring(split + 1);
+                switch (name) {
+                    case "threads":
+                        options.threads = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+                        break;
+                    case "executors":
+                        options.executors = List.of(value.split(","));
+                        break;
+                    case "duration":
+                        options.duration = Integer.parseInt(value);
+                        break;
+                    case "warmup":
+                        options.warmup = Integer.parseInt(value);
+                        break;
+                    case "tenants":
+                        options.tenants = Integer.parseInt(value);
+                        break;
+                    case "rows":
+                        options.rows = Integer.parseInt(value);
+                        break;
+                    case "pool":
+                        options.pool = Integer.parseInt(value);
+                        break;
+                    case "telemetry":
+                        options.telemetry = Boolean.parseBoolean(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unrecognized argument " + arg);
+                }
+            }
+            return options;
+        }
+    }
+}
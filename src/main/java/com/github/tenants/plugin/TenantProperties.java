@@ -3,7 +3,9 @@ package com.github.tenants.plugin;
 import org.apache.ibatis.plugin.Interceptor;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 此类表示应用程序中多租户的配置。
@@ -53,7 +55,9 @@ public class TenantProperties {
      * 过滤器附加过滤后缀。
      * 过滤符合mapper方法名 + 该项值的也会生效于【多租户过滤器 - TenantFilter】的规则。
      * 该项配置的出现主要是为了防止使用PageHelper + 过滤器的时候，mapper method 加上了过滤标识。又因为PageHelper生成的sql为sqlId+_COUNT,导致无法成功过滤，
-     * 最后分页与预期大不同的情况
+     * 最后分页与预期大不同的情况。
+     * 拦截器位于分页插件的外层时（自动注册且分页插件在所有单例创建完成前注册），分页插件生成的 count 查询不经过拦截器，无需该项配置；
+     * 分页插件位于外层时（手动注册顺序不当，或分页插件注册得更晚），count 查询仍会经过拦截器，仍需配置该项，启动时会输出警告日志。
      */
     private String filterAdditional = null;
 
@@ -69,12 +73,67 @@ public class TenantProperties {
      * <p>
      * 如果此变量的值设置为 {@code true}，拦截器将自动注册。
      * 如果值为 {@code false}，则拦截器不会自动注册，必须执行手动注册。
+     * 手动注册时应在 PageHelper、MyBatis-Plus 等分页插件之后注册，使拦截器位于分页插件的外层。
      * </p>
      *
      * @see Interceptor
      */
     private boolean interceptorAutoRegister = true;
 
+    /**
+     * sql解析的相关配置，包括解析失败时的处理策略与解析耗时的限制。
+     */
+    private Parse parse = new Parse();
+
+    /**
+     * 是否注册传递租户上下文的 TaskDecorator，使 @Async 方法可以获取到调用方的租户。
+     * 默认不注册，开启后每次提交任务都会捕获一次租户；容器中已存在 TaskDecorator 时不注册。
+     */
+    private boolean taskDecorator = false;
+
+    /**
+     * 按租户分片路由的相关配置，需配合 TenantRoutingDataSource 使用。
+     */
+    private Routing routing = new Routing();
+
+    /**
+     * 按表指定的租户表名改写规则，key为表名。
+     * 配置了规则的表，在 FROM、JOIN、INSERT、UPDATE、DELETE 中会被改写为租户专属的schema或表名。
+     */
+    private Map<String, TableRewrite> tableRewrites = new HashMap<>();
+
+    /**
+     * 多租户sql改写结果的缓存数量上限，小于等于0时不缓存。
+     * 同一条sql只会被解析一次，之后执行时只需要拼接租户标识。
+     */
+    private int rewriteCacheSize = 2048;
+
+    /**
+     * 插件初始化的相关配置，包括是否在后台异步初始化。
+     */
+    private Init init = new Init();
+
+    /**
+     * 编译结果持久化的相关配置，开启后重启时无需重新解析已见过的sql。
+     */
+    private RewriteStore rewriteStore = new RewriteStore();
+
+    /**
+     * 按租户统计sql执行情况的相关配置。
+     */
+    private Telemetry telemetry = new Telemetry();
+
+    /**
+     * 按租户限制sql并发数与执行速率的相关配置。
+     */
+    private Admission admission = new Admission();
+
+    /**
+     * 自动读取多租户表时，是否检查多租户表存在以租户字段开头的索引，默认检查。
+     * 缺少索引的表会在启动时输出警告日志，并可以通过 PluginCache.getInst().getTenantIndexReport() 查询。
+     */
+    private boolean indexAdvisor = true;
+
     public enum TenantMode {
         /**
          * Auto自动模式：扫描全库，存在符合多租户相关字段的表自动处理。
@@ -86,6 +145,419 @@ public class TenantProperties {
         ASSIGN
     }
 
+    public enum TableRewriteMode {
+        /**
+         * 改写表所在的schema，如 orders 改写为 tenant_1001.orders
+         */
+        SCHEMA,
+        /**
+         * 改写表名，如 orders 改写为 orders_1001
+         */
+        TABLE
+    }
+
+    public enum ParseFailurePolicy {
+        /**
+         * 执行原始sql并输出警告日志
+         */
+        PASS_THROUGH,
+        /**
+         * 拒绝执行，抛出异常
+         */
+        REJECT,
+        /**
+         * 使用基于正则的简易注入处理单表查询与单行插入，无法处理且涉及多租户表时拒绝执行
+         */
+        REGEX
+    }
+
+    /**
+     * 按租户统计sql执行情况的配置。
+     * 统计的内存占用固定，与租户数量无关，每个租户的次数与耗时为估算值。
+     */
+    public static class Telemetry {
+
+        /**
+         * 是否统计sql的执行次数与耗时，默认不统计。
+         */
+        private boolean enabled = false;
+
+        /**
+         * 保留的热点租户与热点sql的数量。
+         */
+        private int topK = 20;
+
+        /**
+         * 估算每个租户、每条sql统计值的 Count-Min Sketch 宽度，越大误差越小，内存占用为宽度的128倍字节。
+         */
+        private int sketchWidth = 2048;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getTopK() {
+            return topK;
+        }
+
+        public void setTopK(int topK) {
+            this.topK = topK;
+        }
+
+        public int getSketchWidth() {
+            return sketchWidth;
+        }
+
+        public void setSketchWidth(int sketchWidth) {
+            this.sketchWidth = sketchWidth;
+        }
+    }
+
+    /**
+     * 编译结果持久化的配置。
+     * 编译结果在插件初始化完成后从文件载入，在应用关闭时写入文件，多租户表或改写规则变化后文件自动失效。
+     */
+    public static class RewriteStore {
+
+        /**
+         * 是否持久化编译结果，默认不持久化。
+         */
+        private boolean enabled = false;
+
+        /**
+         * 保存编译结果的文件路径，相对路径基于应用的工作目录。
+         */
+        private String path = "tenant-rewrite-store.bin";
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+    }
+
+    /**
+     * 插件初始化的配置。
+     * 初始化需要扫描所有mapper方法上的过滤注解，AUTO 模式下还需要查询数据库结构，mapper较多时耗时明显。
+     */
+    public static class Init {
+
+        /**
+         * 是否在后台异步初始化，默认在容器启动完成后同步初始化。
+         * 异步初始化期间，除插件自身的查询外，所有经过拦截器的sql都会等待初始化完成。
+         */
+        private boolean async = false;
+
+        /**
+         * 并行扫描mapper与查询数据库结构的线程数，小于等于1时在初始化线程中依次执行。
+         */
+        private int threads = 4;
+
+        /**
+         * 异步初始化期间，sql等待初始化完成的最长时间（毫秒），超时后拒绝执行。
+         */
+        private long awaitTimeout = 30000;
+
+        public boolean isAsync() {
+            return async;
+        }
+
+        public void setAsync(boolean async) {
+            this.async = async;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+
+        public long getAwaitTimeout() {
+            return awaitTimeout;
+        }
+
+        public void setAwaitTimeout(long awaitTimeout) {
+            this.awaitTimeout = awaitTimeout;
+        }
+    }
+
+    public enum AdmissionMode {
+        /**
+         * 等待至多 wait-timeout 毫秒，仍无法执行时拒绝
+         */
+        WAIT,
+        /**
+         * 直接拒绝
+         */
+        FAIL_FAST
+    }
+
+    /**
+     * 按租户限制sql并发数与执行速率的配置，只作用于涉及多租户表的sql。
+     * 超过限制被拒绝时抛出 TenantThrottledException。
+     */
+    public static class Admission {
+
+        /**
+         * 是否按租户限制sql，默认不限制。
+         */
+        private boolean enabled = false;
+
+        /**
+         * 每个租户同时执行的sql数量上限，小于等于0时不限制。
+         */
+        private int maxConcurrent = 0;
+
+        /**
+         * 每个租户每秒执行的sql数量上限，小于等于0时不限制。
+         */
+        private double rate = 0;
+
+        /**
+         * 每个租户允许突发执行的sql数量，小于等于0时与每秒的上限相同。
+         */
+        private int burst = 0;
+
+        /**
+         * 达到限制时的处理方式，默认等待。
+         */
+        private AdmissionMode mode = AdmissionMode.WAIT;
+
+        /**
+         * 达到限制时的最长等待时间（毫秒）。
+         */
+        private long waitTimeout = 1000;
+
+        /**
+         * 租户的限制状态在多长时间（毫秒）未使用后被清理。
+         */
+        private long idleTimeout = 600000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+
+        public void setMaxConcurrent(int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+        }
+
+        public double getRate() {
+            return rate;
+        }
+
+        public void setRate(double rate) {
+            this.rate = rate;
+        }
+
+        public int getBurst() {
+            return burst;
+        }
+
+        public void setBurst(int burst) {
+            this.burst = burst;
+        }
+
+        public AdmissionMode getMode() {
+            return mode;
+        }
+
+        public void setMode(AdmissionMode mode) {
+            this.mode = mode;
+        }
+
+        public long getWaitTimeout() {
+            return waitTimeout;
+        }
+
+        public void setWaitTimeout(long waitTimeout) {
+            this.waitTimeout = waitTimeout;
+        }
+
+        public long getIdleTimeout() {
+            return idleTimeout;
+        }
+
+        public void setIdleTimeout(long idleTimeout) {
+            this.idleTimeout = idleTimeout;
+        }
+    }
+
+    /**
+     * sql解析的配置。
+     * 存在语法错误的sql会被记录，之后不会再次尝试解析，直接按照失败策略处理；
+     * 超过长度、耗时限制只是本次执行按照失败策略处理，之后仍会尝试解析。
+     */
+    public static class Parse {
+
+        /**
+         * 解析失败时的处理策略，默认执行原始sql并在每次执行时输出警告日志。
+         */
+        private ParseFailurePolicy failurePolicy = ParseFailurePolicy.PASS_THROUGH;
+
+        /**
+         * 允许解析的sql最大长度（字符数），超过时本次执行按解析失败处理，小于等于0时不限制。
+         */
+        private int maxSqlLength = 1024 * 1024;
+
+        /**
+         * 单条sql的解析超时时间（毫秒），从开始解析时计算，超时或解析线程繁忙时本次执行按解析失败处理，小于等于0时不限制且在当前线程解析。
+         */
+        private long timeout = 5000;
+
+        /**
+         * 超长sql的长度阈值（字符数），超过时缩略其中的 IN 列表与多行 VALUES 后再解析，小于等于0时不缩略。
+         */
+        private int largeSqlThreshold = 32 * 1024;
+
+        public ParseFailurePolicy getFailurePolicy() {
+            return failurePolicy;
+        }
+
+        public void setFailurePolicy(ParseFailurePolicy failurePolicy) {
+            this.failurePolicy = failurePolicy;
+        }
+
+        public int getMaxSqlLength() {
+            return maxSqlLength;
+        }
+
+        public void setMaxSqlLength(int maxSqlLength) {
+            this.maxSqlLength = maxSqlLength;
+        }
+
+        public long getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(long timeout) {
+            this.timeout = timeout;
+        }
+
+        public int getLargeSqlThreshold() {
+            return largeSqlThreshold;
+        }
+
+        public void setLargeSqlThreshold(int largeSqlThreshold) {
+            this.largeSqlThreshold = largeSqlThreshold;
+        }
+    }
+
+    /**
+     * 租户表名改写规则。
+     * pattern 中的 {tenant} 为租户标识，{table} 为原表名。
+     */
+    public static class TableRewrite {
+
+        /**
+         * 改写方式，默认改写schema。
+         */
+        private TableRewriteMode mode = TableRewriteMode.SCHEMA;
+
+        /**
+         * 改写后的schema或表名，为空时 SCHEMA 模式默认为 tenant_{tenant}，TABLE 模式默认为 {table}_{tenant}。
+         */
+        private String pattern = null;
+
+        /**
+         * 改写表名的同时是否仍添加租户字段条件，默认不添加。
+         */
+        private boolean predicate = false;
+
+        public TableRewriteMode getMode() {
+            return mode;
+        }
+
+        public void setMode(TableRewriteMode mode) {
+            this.mode = mode;
+        }
+
+        public String getPattern() {
+            return pattern;
+        }
+
+        public void setPattern(String pattern) {
+            this.pattern = pattern;
+        }
+
+        public boolean isPredicate() {
+            return predicate;
+        }
+
+        public void setPredicate(boolean predicate) {
+            this.predicate = predicate;
+        }
+    }
+
+    /**
+     * 按租户分片路由的配置。
+     * 租户所在分片优先由 TenantShardMapping 的实现确定，其次是 shards 中的静态映射，最后是默认分片。
+     */
+    public static class Routing {
+
+        /**
+         * 是否启用按租户分片路由，默认不启用。
+         */
+        private boolean enabled = false;
+
+        /**
+         * 未映射分片的租户所使用的默认分片标识。为空时，未映射的租户执行sql将抛出异常。
+         */
+        private String defaultShard = null;
+
+        /**
+         * 租户与分片的静态映射，key为租户标识，value为分片（目标数据源）标识。
+         */
+        private Map<Long, String> shards = new HashMap<>();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDefaultShard() {
+            return defaultShard;
+        }
+
+        public void setDefaultShard(String defaultShard) {
+            this.defaultShard = defaultShard;
+        }
+
+        public Map<Long, String> getShards() {
+            return shards;
+        }
+
+        public void setShards(Map<Long, String> shards) {
+            this.shards = shards;
+        }
+    }
+
     public boolean isInterceptorAutoRegister() {
         return interceptorAutoRegister;
     }
@@ -133,4 +605,84 @@ public class TenantProperties {
     public void setExcludeTables(List<String> excludeTables) {
         this.excludeTables = excludeTables;
     }
+
+    public Routing getRouting() {
+        return routing;
+    }
+
+    public void setRouting(Routing routing) {
+        this.routing = routing;
+    }
+
+    public Map<String, TableRewrite> getTableRewrites() {
+        return tableRewrites;
+    }
+
+    public void setTableRewrites(Map<String, TableRewrite> tableRewrites) {
+        this.tableRewrites = tableRewrites;
+    }
+
+    public int getRewriteCacheSize() {
+        return rewriteCacheSize;
+    }
+
+    public void setRewriteCacheSize(int rewriteCacheSize) {
+        this.rewriteCacheSize = rewriteCacheSize;
+    }
+
+    public boolean isTaskDecorator() {
+        return taskDecorator;
+    }
+
+    public void setTaskDecorator(boolean taskDecorator) {
+        this.taskDecorator = taskDecorator;
+    }
+
+    public Parse getParse() {
+        return parse;
+    }
+
+    public void setParse(Parse parse) {
+        this.parse = parse;
+    }
+
+    public Init getInit() {
+        return init;
+    }
+
+    public void setInit(Init init) {
+        this.init = init;
+    }
+
+    public RewriteStore getRewriteStore() {
+        return rewriteStore;
+    }
+
+    public void setRewriteStore(RewriteStore rewriteStore) {
+        this.rewriteStore = rewriteStore;
+    }
+
+    public Telemetry getTelemetry() {
+        return telemetry;
+    }
+
+    public void setTelemetry(Telemetry telemetry) {
+        this.telemetry = telemetry;
+    }
+
+    public Admission getAdmission() {
+        return admission;
+    }
+
+    public void setAdmission(Admission admission) {
+        this.admission = admission;
+    }
+
+    public boolean isIndexAdvisor() {
+        return indexAdvisor;
+    }
+
+    public void setIndexAdvisor(boolean indexAdvisor) {
+        this.indexAdvisor = indexAdvisor;
+    }
 }
@@ -3,6 +3,14 @@ package com.github.tenants.plugin.cache;
 import com.github.tenants.plugin.TenantProperties;
 import com.github.tenants.plugin.annotation.TenantFilter;
 import com.github.tenants.plugin.core.TenantUserIdentity;
+import com.github.tenants.plugin.core.admission.TenantAdmissionController;
+import com.github.tenants.plugin.core.advisor.TenantIndexAdvisor;
+import com.github.tenants.plugin.core.advisor.TenantIndexReport;
+import com.github.tenants.plugin.core.rewrite.RegexTenantInjector;
+import com.github.tenants.plugin.core.rewrite.TenantSqlCompiler;
+import com.github.tenants.plugin.core.rewrite.TenantSqlRewriter;
+import com.github.tenants.plugin.core.routing.TenantShardRouter;
+import com.github.tenants.plugin.core.telemetry.TenantTelemetry;
 import com.github.tenants.plugin.ex.TenantException;
 import com.github.tenants.plugin.mapper.StructureMapper;
 import com.github.tenants.plugin.util.MybatisUtils;
@@ -10,10 +18,11 @@ import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
 
 import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 /**
@@ -24,7 +33,10 @@ import java.util.stream.Collectors;
  */
 public class PluginCache {
 
-    private static PluginCache inst = null;
+    /**
+     * 当前生效的插件缓存，由 {@link #publish()} 设置，重建后替换为新的实例
+     */
+    private static volatile PluginCache inst = null;
 
     /**
      * mapper方法名与过滤注解关系映射。
@@ -37,7 +49,32 @@ public class PluginCache {
     public TenantUserIdentity tenantUserImplement;
 
     /**
-     * 使用给定的参数构造一个 PluginCache 对象。
+     * 多租户sql编译器，根据载入后的多租户表构建。
+     */
+    private final TenantSqlCompiler tenantSqlCompiler;
+
+    /**
+     * 按租户统计sql执行情况，未开启统计时为null。
+     */
+    private TenantTelemetry tenantTelemetry;
+
+    /**
+     * 按租户限制sql并发数与执行速率，未开启限制时为null。
+     */
+    private TenantAdmissionController tenantAdmissionController;
+
+    /**
+     * 多租户表的索引检查结果，未自动读取多租户表或未开启检查时为null。
+     */
+    private TenantIndexReport tenantIndexReport;
+
+    /**
+     * 租户分片路由器，未启用分片路由时为null。
+     */
+    private TenantShardRouter tenantShardRouter;
+
+    /**
+     * 使用给定的参数构造一个 PluginCache 对象，构造完成后需调用 {@link #publish()} 才会生效。
      *
      * @param sqlSessionFactoryList 要从中检索映射器注册表的 SqlSessionFactory 对象的列表
      * @param tenantProperties      包含多租户相关字段和设置的 TenantProperties 对象
@@ -45,44 +82,119 @@ public class PluginCache {
      * @throws TenantException 如果 tenantProperties 中未指定多租户相关字段
      */
     public PluginCache(List<SqlSessionFactory> sqlSessionFactoryList, TenantProperties tenantProperties, TenantUserIdentity tenantUserImplement) {
+        this(sqlSessionFactoryList, tenantProperties, tenantUserImplement, Runnable::run);
+    }
+
+    /**
+     * 使用给定的参数构造一个 PluginCache 对象，mapper的扫描与数据库结构的查询在给定的线程池中并行执行。
+     * 构造完成后需调用 {@link #publish()} 才会生效。
+     *
+     * @param sqlSessionFactoryList 要从中检索映射器注册表的 SqlSessionFactory 对象的列表
+     * @param tenantProperties      包含多租户相关字段和设置的 TenantProperties 对象
+     * @param tenantUserImplement   用于实现多租户的 TenantUserIdentity 对象
+     * @param executor              执行扫描与查询的线程池
+     * @throws TenantException 如果 tenantProperties 中未指定多租户相关字段，或扫描、查询失败
+     */
+    public PluginCache(List<SqlSessionFactory> sqlSessionFactoryList, TenantProperties tenantProperties, TenantUserIdentity tenantUserImplement,
+                       Executor executor) {
         if (tenantProperties.getTargetColumns() == null) {
             throw new TenantException("no multi tenant related fields are specified");
         }
-        Map<Class<?>, ?> classMybatisMapperProxyFactoryMap = MybatisUtils.getMapperRegistry(sqlSessionFactoryList.get(0));
+        SqlSessionFactory sqlSessionFactory = sqlSessionFactoryList.get(0);
+        // 先复制一份mapper列表，之后注册 StructureMapper 时不会影响遍历
+        List<Class<?>> mapperClasses = new ArrayList<>(MybatisUtils.getMappers(sqlSessionFactory));
         //将mybatis-plus的mapper获取到，获取每一个方法上的MybatisInterceptorAnnotation注解的type与对应方法全限路径。
-        this.nameNFilter = new HashMap<>();
-        for (Class<?> aClass : classMybatisMapperProxyFactoryMap.keySet()) {
-            for (Method method : aClass.getMethods()) {
-                TenantFilter annotation = method.getAnnotation(TenantFilter.class);
-                if (annotation != null) {
-                    String name = method.getName();
-                    this.nameNFilter.put(aClass.getName() + "." + name, annotation);
+        Map<String, TenantFilter> filters = new ConcurrentHashMap<>();
+        List<CompletableFuture<?>> tasks = new ArrayList<>();
+        for (Class<?> aClass : mapperClasses) {
+            tasks.add(CompletableFuture.runAsync(() -> {
+                for (Method method : aClass.getMethods()) {
+                    TenantFilter annotation = method.getAnnotation(TenantFilter.class);
+                    if (annotation != null) {
+                        String name = method.getName();
+                        filters.put(aClass.getName() + "." + name, annotation);
+                    }
                 }
-            }
+            }, executor));
         }
+        List<String> tables = Collections.synchronizedList(new ArrayList<>());
+        Map<String, List<String>> columnTables = new ConcurrentHashMap<>();
+        Map<String, Set<String>> columnIndexedTables = new ConcurrentHashMap<>();
         if (tenantProperties.getScanMode().equals(TenantProperties.TenantMode.AUTO)) {
-            List<String> tables = new ArrayList<>();
-            // 创建 SqlSession
-            try (SqlSession sqlSession = sqlSessionFactoryList.get(0).openSession()) {
-                org.apache.ibatis.session.Configuration configuration = sqlSession.getConfiguration();
+            org.apache.ibatis.session.Configuration configuration = sqlSessionFactory.getConfiguration();
+            synchronized (configuration) {
                 if (!configuration.hasMapper(StructureMapper.class)) {
                     configuration.addMapper(StructureMapper.class);
                 }
-                StructureMapper structureMapper = sqlSession.getMapper(StructureMapper.class);
-                for (String targetColumn : tenantProperties.getTargetColumns()) {
-                    List<String> tableNames = structureMapper.queryTablesByColumnName(targetColumn);
-                    tables.addAll(tableNames);
-                }
             }
-            tenantProperties.setTargetTables(tables);
+            // 每个多租户字段使用单独的 SqlSession 查询
+            for (String targetColumn : tenantProperties.getTargetColumns()) {
+                tasks.add(CompletableFuture.runAsync(() -> {
+                    List<String> columnTableList;
+                    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+                        columnTableList = sqlSession.getMapper(StructureMapper.class).queryTablesByColumnName(targetColumn);
+                    }
+                    tables.addAll(columnTableList);
+                    if (tenantProperties.isIndexAdvisor()) {
+                        columnTables.put(targetColumn, columnTableList);
+                        Set<String> indexedTables = TenantIndexAdvisor.findIndexedTables(sqlSessionFactory, targetColumn, columnTableList);
+                        if (indexedTables != null) {
+                            columnIndexedTables.put(targetColumn, indexedTables);
+                        }
+                    }
+                }, executor));
+            }
+        }
+        try {
+            CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            throw new TenantException("failed to load multi tenant plugin cache", e.getCause());
+        }
+        this.nameNFilter = new HashMap<>(filters);
+        if (tenantProperties.getScanMode().equals(TenantProperties.TenantMode.AUTO)) {
+            tenantProperties.setTargetTables(new ArrayList<>(tables));
         }
         if (tenantProperties.getExcludeTables() != null && !tenantProperties.getExcludeTables().isEmpty()) {
             tenantProperties.setTargetTables(tenantProperties.getTargetTables().stream()
                     .filter(targets -> !tenantProperties.getExcludeTables().contains(targets))
                     .collect(Collectors.toList()));
         }
+        if (tenantProperties.getScanMode().equals(TenantProperties.TenantMode.AUTO) && tenantProperties.isIndexAdvisor()) {
+            this.tenantIndexReport = TenantIndexAdvisor.report(tenantProperties.getTargetTables(), columnTables, columnIndexedTables);
+        }
         this.tenantProperties = tenantProperties;
         this.tenantUserImplement = tenantUserImplement;
+        String targetColumn = tenantProperties.getTargetColumns().get(0);
+        this.tenantSqlCompiler = new TenantSqlCompiler(
+                new TenantSqlRewriter(tenantProperties.getTargetTables(), targetColumn, tenantProperties.getTableRewrites()),
+                new RegexTenantInjector(tenantProperties.getTargetTables(), tenantProperties.getTableRewrites() == null ? null
+                        : tenantProperties.getTableRewrites().keySet(), targetColumn),
+                new SqlRewriteCache(tenantProperties.getRewriteCacheSize()), tenantProperties.getParse());
+        TenantProperties.Telemetry telemetry = tenantProperties.getTelemetry();
+        this.tenantTelemetry = telemetry != null && telemetry.isEnabled() ? new TenantTelemetry(telemetry.getTopK(), telemetry.getSketchWidth()) : null;
+        TenantProperties.Admission admission = tenantProperties.getAdmission();
+        this.tenantAdmissionController = admission != null && admission.isEnabled() ? new TenantAdmissionController(admission) : null;
+    }
+
+    /**
+     * 沿用原插件缓存的执行统计与准入控制器，重建时调用，使已占用的许可与统计数据不因重建而丢失。
+     * 两者都不依赖多租户表，只有当前缓存同样开启时才会沿用。
+     *
+     * @param previous 原插件缓存
+     */
+    public void inherit(PluginCache previous) {
+        if (this.tenantTelemetry != null && previous.tenantTelemetry != null) {
+            this.tenantTelemetry = previous.tenantTelemetry;
+        }
+        if (this.tenantAdmissionController != null && previous.tenantAdmissionController != null) {
+            this.tenantAdmissionController = previous.tenantAdmissionController;
+        }
+    }
+
+    /**
+     * 将当前插件缓存设置为生效的实例，应在分片路由器、改写索引等全部载入后调用。
+     */
+    public void publish() {
         PluginCache.inst = this;
     }
 
@@ -94,6 +206,30 @@ public class PluginCache {
         return tenantProperties;
     }
 
+    public TenantSqlCompiler getTenantSqlCompiler() {
+        return tenantSqlCompiler;
+    }
+
+    public TenantTelemetry getTenantTelemetry() {
+        return tenantTelemetry;
+    }
+
+    public TenantAdmissionController getTenantAdmissionController() {
+        return tenantAdmissionController;
+    }
+
+    public TenantIndexReport getTenantIndexReport() {
+        return tenantIndexReport;
+    }
+
+    public TenantShardRouter getTenantShardRouter() {
+        return tenantShardRouter;
+    }
+
+    public void setTenantShardRouter(TenantShardRouter tenantShardRouter) {
+        this.tenantShardRouter = tenantShardRouter;
+    }
+
     public static PluginCache getInst() {
         return inst;
     }
@@ -0,0 +1,193 @@
+package com.github.tenants.plugin.cache;
+
+import com.github.tenants.plugin.core.rewrite.CompiledSql;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SqlRewriteCache 是一个类，用于缓存原始sql与其编译结果。
+ * <p>
+ * 动态sql（如 foreach 生成的 IN 列表）会产生大量不同的sql，因此缓存有数量上限，
+ * 达到上限后随机淘汰一条已有的缓存。
+ * <p>
+ * 解析失败的sql记录在单独的负缓存中，避免每次执行都重复一次代价很高的失败解析。
+ * <p>
+ * 每条缓存记录各自的命中次数，用于排查哪些sql占用了缓存。
+ *
+ * @author xierh
+ * @since 2026/10/19 15:02
+ */
+public class SqlRewriteCache {
+
+    private final ConcurrentMap<String, Entry> compiledSqlMap = new ConcurrentHashMap<>();
+
+    /**
+     * 解析失败的sql与失败原因
+     */
+    private final ConcurrentMap<String, String> failedSqlMap = new ConcurrentHashMap<>();
+
+    private final int maxSize;
+
+    /**
+     * 使用给定的缓存数量上限构造一个 SqlRewriteCache 对象。
+     *
+     * @param maxSize 缓存数量上限，小于等于0时不缓存
+     */
+    public SqlRewriteCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 获取原始sql的编译结果。
+     *
+     * @param sql 原始sql
+     * @return 编译结果，未缓存时返回null
+     */
+    public CompiledSql get(String sql) {
+        Entry entry = compiledSqlMap.get(sql);
+        if (entry == null) {
+            return null;
+        }
+        entry.hits.increment();
+        return entry.compiledSql;
+    }
+
+    /**
+     * 获取原始sql的缓存记录，不计入命中次数。
+     *
+     * @param sql 原始sql
+     * @return 缓存记录，未缓存时返回null
+     */
+    public Entry getEntry(String sql) {
+        return compiledSqlMap.get(sql);
+    }
+
+    /**
+     * 缓存原始sql的编译结果。
+     *
+     * @param sql         原始sql
+     * @param compiledSql 编译结果
+     */
+    public void put(String sql, CompiledSql compiledSql) {
+        if (maxSize <= 0) {
+            return;
+        }
+        evictIfFull(compiledSqlMap);
+        compiledSqlMap.put(sql, new Entry(compiledSql));
+    }
+
+    /**
+     * 获取sql解析失败的原因。
+     *
+     * @param sql 原始sql
+     * @return 失败原因，未解析失败过时返回null
+     */
+    public String getFailure(String sql) {
+        return failedSqlMap.get(sql);
+    }
+
+    /**
+     * 记录解析失败的sql。
+     *
+     * @param sql     原始sql
+     * @param failure 失败原因
+     */
+    public void putFailure(String sql, String failure) {
+        if (maxSize <= 0) {
+            return;
+        }
+        evictIfFull(failedSqlMap);
+        failedSqlMap.put(sql, failure == null ? "" : failure);
+    }
+
+    private void evictIfFull(ConcurrentMap<String, ?> map) {
+        if (map.size() >= maxSize) {
+            Iterator<String> iterator = map.keySet().iterator();
+            if (iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 移除原始sql的编译结果与解析失败记录，之后再次执行时重新解析。
+     *
+     * @param sql 原始sql
+     * @return 存在编译结果或解析失败记录则为true
+     */
+    public boolean remove(String sql) {
+        boolean removed = compiledSqlMap.remove(sql) != null;
+        return failedSqlMap.remove(sql) != null || removed;
+    }
+
+    /**
+     * 获取所有缓存的编译结果。
+     *
+     * @return 原始sql与编译结果的快照
+     */
+    public Map<String, CompiledSql> asMap() {
+        Map<String, CompiledSql> snapshot = new LinkedHashMap<>();
+        compiledSqlMap.forEach((sql, entry) -> snapshot.put(sql, entry.compiledSql));
+        return snapshot;
+    }
+
+    /**
+     * 获取所有缓存记录。
+     *
+     * @return 原始sql与缓存记录的只读视图
+     */
+    public Map<String, Entry> entries() {
+        return Collections.unmodifiableMap(compiledSqlMap);
+    }
+
+    /**
+     * 获取所有解析失败的sql。
+     *
+     * @return 原始sql与失败原因的只读视图
+     */
+    public Map<String, String> failures() {
+        return Collections.unmodifiableMap(failedSqlMap);
+    }
+
+    public int size() {
+        return compiledSqlMap.size();
+    }
+
+    public int failedSize() {
+        return failedSqlMap.size();
+    }
+
+    public void clear() {
+        compiledSqlMap.clear();
+        failedSqlMap.clear();
+    }
+
+    /**
+     * 一条缓存记录，包含编译结果与命中次数。
+     */
+    public static final class Entry {
+
+        private final CompiledSql compiledSql;
+
+        private final LongAdder hits = new LongAdder();
+
+        private Entry(CompiledSql compiledSql) {
+            this.compiledSql = compiledSql;
+        }
+
+        public CompiledSql getCompiledSql() {
+            return compiledSql;
+        }
+
+        public long getHits() {
+            return hits.sum();
+        }
+    }
+}
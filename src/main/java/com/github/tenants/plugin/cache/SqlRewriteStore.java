@@ -0,0 +1,212 @@
+package com.github.tenants.plugin.cache;
+
+import com.github.tenants.plugin.TenantProperties;
+import com.github.tenants.plugin.core.rewrite.CompiledSql;
+import com.github.tenants.plugin.core.rewrite.TenantSqlRewriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * SqlRewriteStore 是一个类，用于将编译结果持久化到本地文件，使重启后无需重新解析已见过的sql。
+ * <p>
+ * 文件为紧凑的二进制格式：文件头包含魔数、格式版本与配置指纹，之后依次为每条编译结果，
+ * 每条记录以原始sql及其改写片段的64位哈希开头，读取时重新计算并校验，用于发现损坏的记录。
+ * 配置指纹由多租户表快照、多租户字段、表名改写规则、解析失败策略、改写结果版本与插件版本计算得出，
+ * 与当前配置不一致的文件整体忽略，避免使用按旧配置或旧版本改写器改写的结果。
+ * 插件版本取自jar包的 MANIFEST，从class目录运行时无法获取，因此以 {@link TenantSqlRewriter#REWRITE_VERSION} 为准。
+ *
+ * @author xierh
+ * @since 2026/10/19 20:40
+ */
+public class SqlRewriteStore {
+
+    private static final Logger log = LoggerFactory.getLogger(SqlRewriteStore.class);
+
+    private static final int MAGIC = 0x54525753;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Path path;
+
+    private final long fingerprint;
+
+    /**
+     * 使用给定的参数构造一个 SqlRewriteStore 对象。
+     *
+     * @param path        文件路径
+     * @param fingerprint 当前配置的指纹
+     * @see #fingerprint(TenantProperties)
+     */
+    public SqlRewriteStore(Path path, long fingerprint) {
+        this.path = path;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * 从文件中载入编译结果到缓存中，文件不存在、已损坏或配置指纹不一致时不载入。
+     *
+     * @param sqlRewriteCache 编译结果的缓存
+     * @return 载入的编译结果数量
+     */
+    public int load(SqlRewriteCache sqlRewriteCache) {
+        if (!Files.isRegularFile(path)) {
+            return 0;
+        }
+        int loaded = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                log.warn("ignored unrecognized tenant rewrite store {}", path);
+                return 0;
+            }
+            if (buffer.getLong() != fingerprint) {
+                log.info("ignored tenant rewrite store {}, it was written with a different tenant configuration", path);
+                return 0;
+            }
+            while (buffer.hasRemaining()) {
+                long hash = buffer.getLong();
+                String sql = readString(buffer);
+                int fragmentCount = buffer.getInt();
+                if (fragmentCount < 0 || fragmentCount > buffer.remaining() / 4) {
+                    throw new IllegalArgumentException("invalid fragment count " + fragmentCount);
+                }
+                String[] fragments = new String[fragmentCount];
+                for (int i = 0; i < fragmentCount; i++) {
+                    fragments[i] = readString(buffer);
+                }
+                if (hash(sql, fragments) != hash) {
+                    log.warn("tenant rewrite store {} is corrupted, stopped loading after {} entries", path, loaded);
+                    break;
+                }
+                sqlRewriteCache.put(sql, fragmentCount == 0 ? CompiledSql.unchanged(sql) : new CompiledSql(sql, fragments));
+                loaded++;
+            }
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            log.warn("failed to load tenant rewrite store {}, loaded {} entries: {}", path, loaded, e.toString());
+        }
+        return loaded;
+    }
+
+    /**
+     * 将缓存中的编译结果写入文件。先写入临时文件再替换，写入失败不会破坏已有的文件。
+     *
+     * @param sqlRewriteCache 编译结果的缓存
+     * @return 写入的编译结果数量
+     */
+    public int save(SqlRewriteCache sqlRewriteCache) {
+        int saved = 0;
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(fingerprint);
+                for (Map.Entry<String, CompiledSql> entry : sqlRewriteCache.asMap().entrySet()) {
+                    String sql = entry.getKey();
+                    CompiledSql compiledSql = entry.getValue();
+                    // 无需改写的sql不保存片段
+                    String[] fragments = compiledSql.isTenantAware() ? compiledSql.getFragments() : new String[0];
+                    out.writeLong(hash(sql, fragments));
+                    writeString(out, sql);
+                    out.writeInt(fragments.length);
+                    for (String fragment : fragments) {
+                        writeString(out, fragment);
+                    }
+                    saved++;
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("failed to save tenant rewrite store {}: {}", path, e.toString());
+            return 0;
+        }
+        return saved;
+    }
+
+    /**
+     * 计算配置指纹。需在多租户表载入完成后调用。
+     *
+     * @param tenantProperties 多租户配置
+     * @return 配置指纹
+     */
+    public static long fingerprint(TenantProperties tenantProperties) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(TenantSqlRewriter.REWRITE_VERSION).append(':')
+                .append(PluginCache.class.getPackage().getImplementationVersion()).append('\n');
+        builder.append(tenantProperties.getTargetColumns()).append('\n');
+        List<String> tables = new ArrayList<>();
+        if (tenantProperties.getTargetTables() != null) {
+            for (String table : tenantProperties.getTargetTables()) {
+                tables.add(table.toLowerCase());
+            }
+        }
+        tables.sort(null);
+        builder.append(tables).append('\n');
+        if (tenantProperties.getTableRewrites() != null) {
+            for (Map.Entry<String, TenantProperties.TableRewrite> entry : new TreeMap<>(tenantProperties.getTableRewrites()).entrySet()) {
+                TenantProperties.TableRewrite rewrite = entry.getValue();
+                builder.append(entry.getKey()).append(':').append(rewrite.getMode()).append(':')
+                        .append(rewrite.getPattern()).append(':').append(rewrite.isPredicate()).append('\n');
+            }
+        }
+        builder.append(tenantProperties.getParse().getFailurePolicy());
+        return hash(FNV_OFFSET, builder.toString());
+    }
+
+    private static long hash(String sql, String[] fragments) {
+        long hash = hash(FNV_OFFSET, sql);
+        for (String fragment : fragments) {
+            hash = hash(hash * FNV_PRIME, fragment);
+        }
+        return hash;
+    }
+
+    /**
+     * 64位 FNV-1a 哈希。
+     */
+    private static long hash(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static String readString(MappedByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+}
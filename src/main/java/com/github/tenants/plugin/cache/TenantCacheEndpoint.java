@@ -0,0 +1,239 @@
+package com.github.tenants.plugin.cache;
+
+import com.github.tenants.plugin.TenantProperties;
+import com.github.tenants.plugin.annotation.TenantFilter;
+import com.github.tenants.plugin.core.init.TenantPluginInitializer;
+import com.github.tenants.plugin.core.rewrite.CompiledSql;
+import com.github.tenants.plugin.core.rewrite.TenantSqlCompiler;
+import com.github.tenants.plugin.ex.TenantException;
+import net.sf.jsqlparser.JSQLParserException;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.scripting.xmltags.DynamicSqlSource;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.endpoint.annotation.*;
+import org.springframework.lang.Nullable;
+
+import java.util.*;
+
+/**
+ * 查看与管理插件缓存的 actuator 端点，存在 spring-boot-actuator 时注册。
+ * <pre>
+ * GET    /actuator/tenantCache?limit=50                  多租户表、过滤注解，以及命中次数最多的编译结果与解析失败的sql
+ * GET    /actuator/tenantCache/{statementId}?tenantId=1  sqlId对应的原始sql与改写结果，指定租户时输出最终执行的sql
+ * DELETE /actuator/tenantCache/{statementId}             移除sqlId对应的编译结果，下次执行时重新解析
+ * DELETE /actuator/tenantCache                           清空所有编译结果
+ * POST   /actuator/tenantCache                           重建插件缓存，重新读取多租户表与过滤注解
+ * </pre>
+ * sqlId对应的原始sql取自该sqlId最近一次解析的sql；未解析过时，静态sql直接从 MappedStatement 获取，动态sql无法获取。
+ * 查看未缓存的sql时直接使用 {@link com.github.tenants.plugin.core.rewrite.TenantSqlRewriter} 改写，不写入缓存、不记录解析失败，也不计入直接执行的次数。
+ *
+ * @author xierh
+ * @since 2026/10/19 23:50
+ */
+@Endpoint(id = "tenantCache")
+public class TenantCacheEndpoint {
+
+    private static final int DEFAULT_LIMIT = 50;
+
+    /**
+     * 输出改写结果时，租户标识所在位置的占位符
+     */
+    private static final String TENANT_PLACEHOLDER = "{tenant}";
+
+    private final TenantPluginInitializer tenantPluginInitializer;
+
+    private final ObjectProvider<SqlSessionFactory> sqlSessionFactories;
+
+    public TenantCacheEndpoint(TenantPluginInitializer tenantPluginInitializer, ObjectProvider<SqlSessionFactory> sqlSessionFactories) {
+        this.tenantPluginInitializer = tenantPluginInitializer;
+        this.sqlSessionFactories = sqlSessionFactories;
+    }
+
+    @ReadOperation
+    public Map<String, Object> cache(@Nullable Integer limit) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        PluginCache pluginCache = PluginCache.getInst();
+        result.put("ready", pluginCache != null);
+        if (pluginCache == null) {
+            return result;
+        }
+        TenantProperties tenantProperties = pluginCache.getTenantProperties();
+        result.put("scanMode", tenantProperties.getScanMode());
+        result.put("targetColumns", tenantProperties.getTargetColumns());
+        result.put("targetTables", tenantProperties.getTargetTables());
+        result.put("excludeTables", tenantProperties.getExcludeTables());
+        Map<String, Boolean> filters = new TreeMap<>();
+        pluginCache.getNameNFilter().forEach((statementId, tenantFilter) -> filters.put(statementId, tenantFilter.exclude()));
+        result.put("filters", filters);
+
+        SqlRewriteCache sqlRewriteCache = pluginCache.getTenantSqlCompiler().getSqlRewriteCache();
+        int max = limit == null || limit < 0 ? DEFAULT_LIMIT : limit;
+        List<Map.Entry<String, SqlRewriteCache.Entry>> entries = new ArrayList<>(sqlRewriteCache.entries().entrySet());
+        long totalHits = 0;
+        long totalSize = 0;
+        for (Map.Entry<String, SqlRewriteCache.Entry> entry : entries) {
+            totalHits += entry.getValue().getHits();
+            totalSize += size(entry.getKey(), entry.getValue().getCompiledSql());
+        }
+        entries.sort((a, b) -> Long.compare(b.getValue().getHits(), a.getValue().getHits()));
+        List<Map<String, Object>> rewrites = new ArrayList<>();
+        for (Map.Entry<String, SqlRewriteCache.Entry> entry : entries.subList(0, Math.min(max, entries.size()))) {
+            CompiledSql compiledSql = entry.getValue().getCompiledSql();
+            Map<String, Object> rewrite = new LinkedHashMap<>();
+            rewrite.put("sql", entry.getKey());
+            rewrite.put("rewritten", String.join(TENANT_PLACEHOLDER, compiledSql.getFragments()));
+            rewrite.put("tenantAware", compiledSql.isTenantAware());
+            rewrite.put("hits", entry.getValue().getHits());
+            rewrite.put("size", size(entry.getKey(), compiledSql));
+            rewrites.add(rewrite);
+        }
+        Map<String, String> failures = new LinkedHashMap<>();
+        for (Map.Entry<String, String> failure : sqlRewriteCache.failures().entrySet()) {
+            if (failures.size() >= max) {
+                break;
+            }
+            failures.put(failure.getKey(), failure.getValue());
+        }
+        Map<String, Object> cache = new LinkedHashMap<>();
+        cache.put("size", entries.size());
+        cache.put("maxSize", tenantProperties.getRewriteCacheSize());
+        cache.put("failedSize", sqlRewriteCache.failedSize());
+        cache.put("passThrough", pluginCache.getTenantSqlCompiler().getPassThroughCount());
+        cache.put("hits", totalHits);
+        cache.put("chars", totalSize);
+        cache.put("rewrites", rewrites);
+        cache.put("failures", failures);
+        result.put("rewriteCache", cache);
+        return result;
+    }
+
+    @ReadOperation
+    public Map<String, Object> statement(@Selector String statementId, @Nullable Long tenantId) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("statementId", statementId);
+        PluginCache pluginCache = PluginCache.getInst();
+        if (pluginCache == null) {
+            result.put("ready", false);
+            return result;
+        }
+        TenantFilter tenantFilter = pluginCache.getNameNFilter().get(statementId);
+        // 与拦截器一致，标注了 exclude 为false的过滤注解时不做多租户处理
+        result.put("skipped", tenantFilter != null && !tenantFilter.exclude());
+        TenantSqlCompiler tenantSqlCompiler = pluginCache.getTenantSqlCompiler();
+        String sql = tenantSqlCompiler.getStatementSql(statementId);
+        if (sql == null) {
+            sql = this.getStaticSql(statementId);
+        }
+        result.put("sql", sql);
+        if (sql == null) {
+            return result;
+        }
+        SqlRewriteCache sqlRewriteCache = tenantSqlCompiler.getSqlRewriteCache();
+        SqlRewriteCache.Entry entry = sqlRewriteCache.getEntry(sql);
+        result.put("cached", entry != null);
+        result.put("hits", entry == null ? 0 : entry.getHits());
+        String failure = sqlRewriteCache.getFailure(sql);
+        result.put("failure", failure);
+        if (entry == null && failure != null) {
+            return result;
+        }
+        CompiledSql compiledSql;
+        try {
+            compiledSql = entry != null ? entry.getCompiledSql() : tenantSqlCompiler.getTenantSqlRewriter().compile(sql);
+        } catch (JSQLParserException | TenantException e) {
+            result.put("failure", e.getMessage());
+            return result;
+        }
+        result.put("tenantAware", compiledSql.isTenantAware());
+        result.put("rewritten", tenantId == null ? String.join(TENANT_PLACEHOLDER, compiledSql.getFragments()) : compiledSql.render(tenantId));
+        return result;
+    }
+
+    @DeleteOperation
+    public Map<String, Object> evict(@Selector String statementId) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("statementId", statementId);
+        PluginCache pluginCache = PluginCache.getInst();
+        if (pluginCache == null) {
+            result.put("evicted", 0);
+            return result;
+        }
+        TenantSqlCompiler tenantSqlCompiler = pluginCache.getTenantSqlCompiler();
+        Set<String> sqls = new LinkedHashSet<>();
+        sqls.add(tenantSqlCompiler.getStatementSql(statementId));
+        sqls.add(this.getStaticSql(statementId));
+        int evicted = 0;
+        for (String sql : sqls) {
+            if (sql != null && tenantSqlCompiler.getSqlRewriteCache().remove(sql)) {
+                evicted++;
+            }
+        }
+        result.put("evicted", evicted);
+        return result;
+    }
+
+    @DeleteOperation
+    public Map<String, Object> clear() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        PluginCache pluginCache = PluginCache.getInst();
+        if (pluginCache == null) {
+            result.put("evicted", 0);
+            return result;
+        }
+        SqlRewriteCache sqlRewriteCache = pluginCache.getTenantSqlCompiler().getSqlRewriteCache();
+        result.put("evicted", sqlRewriteCache.size() + sqlRewriteCache.failedSize());
+        sqlRewriteCache.clear();
+        return result;
+    }
+
+    @WriteOperation
+    public Map<String, Object> rebuild() {
+        PluginCache pluginCache = tenantPluginInitializer.rebuild();
+        Map<String, Object> result = new LinkedHashMap<>();
+        List<String> targetTables = pluginCache.getTenantProperties().getTargetTables();
+        result.put("targetTables", targetTables == null ? 0 : targetTables.size());
+        result.put("filters", pluginCache.getNameNFilter().size());
+        result.put("rewriteCache", pluginCache.getTenantSqlCompiler().getSqlRewriteCache().size());
+        return result;
+    }
+
+    /**
+     * 从 MappedStatement 获取静态sql，动态sql需要参数才能生成，返回null。
+     *
+     * @param statementId mapper方法对应的sqlId
+     * @return 静态sql，sqlId不存在或为动态sql时返回null
+     */
+    private String getStaticSql(String statementId) {
+        for (SqlSessionFactory sqlSessionFactory : (Iterable<SqlSessionFactory>) sqlSessionFactories.orderedStream()::iterator) {
+            Configuration configuration = sqlSessionFactory.getConfiguration();
+            if (!configuration.hasStatement(statementId, false)) {
+                continue;
+            }
+            MappedStatement ms = configuration.getMappedStatement(statementId, false);
+            if (ms.getSqlSource() instanceof DynamicSqlSource) {
+                return null;
+            }
+            try {
+                return ms.getBoundSql(null).getSql();
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 估算一条编译结果占用的字符数，包括原始sql与改写后的片段。
+     */
+    private static long size(String sql, CompiledSql compiledSql) {
+        long size = sql.length();
+        if (compiledSql.isTenantAware()) {
+            for (String fragment : compiledSql.getFragments()) {
+                size += fragment.length();
+            }
+        }
+        return size;
+    }
+}
@@ -2,11 +2,23 @@ package com.github.tenants.plugin.core;
 
 import com.github.tenants.plugin.TenantProperties;
 import com.github.tenants.plugin.core.interceptor.TenantSqlInterceptor;
+import com.github.tenants.plugin.core.routing.TenantRoutingDataSource;
+import com.github.tenants.plugin.core.routing.TenantShardRouter;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.plugin.Interceptor;
 import org.apache.ibatis.session.SqlSessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.context.ApplicationContext;
 
-import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * MybatisInterceptorAutoRegister 类负责注册 TenantSqlInterceptor
@@ -26,15 +38,21 @@ import javax.annotation.PostConstruct;
  * <p>
  * 此类定义了两个字段：tenantProperties 和 sqlSessionFactoryList，它们通过构造函数注入。
  * <p>
- * mybatisInterceptorRegister（） 方法用 @PostConstruct 注释，表示此方法是
- * 在构造 Bean 并注入依赖关系后调用。此方法执行
- * 为每个已配置的 SqlSessionFactory 实例注册 TenantSqlInterceptor。
+ * mybatisInterceptorRegister（） 方法在所有单例创建完成后调用，此时 PageHelper、MyBatis-Plus 等分页插件均已注册，
+ * 此方法为每个已配置的 SqlSessionFactory 实例注册 TenantSqlInterceptor。
+ * MyBatis 中后注册的拦截器位于责任链的外层，因此 TenantSqlInterceptor 总是先于分页插件执行：
+ * 分页插件拿到的是已添加租户条件的sql，count 查询与分页查询都由同一条改写后的sql生成，每次分页只需改写一次。
+ * 注册后会检查拦截器链，分页插件在此之后才注册、或手动注册时顺序不当，使分页插件位于外层时输出警告日志。
+ * MyBatis 不支持调整已注册拦截器的顺序，此时分页插件生成的 count 查询仍会经过拦截器，需要配置 {@link TenantProperties#getFilterAdditional()}。
+ * <p>
+ * 启用分片路由时，注册过程中会同时检查 SqlSessionFactory 的数据源是否为 TenantRoutingDataSource，
+ * 否则拦截器绑定的租户不会影响连接的选择。
  *
  * @author xierh
  * @since 2023/10/17 17:26
  */
 @ConditionalOnClass({TenantProperties.class, SqlSessionFactory.class})
-public class MybatisInterceptorAutoRegister{
+public class MybatisInterceptorAutoRegister implements SmartInitializingSingleton {
 
     final TenantProperties tenantProperties;
 
@@ -42,29 +60,95 @@ public class MybatisInterceptorAutoRegister{
 
     final ApplicationContext context;
 
+    final TenantShardRouter tenantShardRouter;
+
+    private static final Logger log = LoggerFactory.getLogger(MybatisInterceptorAutoRegister.class);
+
+    /**
+     * 已知的分页插件，应位于 TenantSqlInterceptor 的内层
+     */
+    private static final Set<String> PAGINATION_INTERCEPTORS = new HashSet<>(Arrays.asList(
+            "com.github.pagehelper.PageInterceptor",
+            "com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor",
+            "com.baomidou.mybatisplus.extension.plugins.PaginationInterceptor"));
+
     /**
      * 此方法将 TenantSqlInterceptor 注册为所有已配置的 SqlSessionFactory 实例的侦听器。
      * 如果拦截器自动注册配置属性设置为 false，则该方法根本不执行任何操作。
      * TenantSqlInterceptor 拦截 SQL 语句，并根据当前租户添加租户标识符子句。
-     * 此方法在构造 Bean 并注入依赖项后调用，如@PostConstruct注释所示。
+     * 此方法在所有单例创建完成后调用，保证 TenantSqlInterceptor 位于分页插件的外层。
+     * 已经注册过 TenantSqlInterceptor 的 SqlSessionFactory 不会重复注册。
      * <p>
      *
      * @see TenantProperties#interceptorAutoRegister
      */
-    @PostConstruct
+    @Override
+    public void afterSingletonsInstantiated() {
+        this.mybatisInterceptorRegister();
+    }
+
     private void mybatisInterceptorRegister() {
-        if (!tenantProperties.isInterceptorAutoRegister()) {
-            return;
-        }
         for (SqlSessionFactory sqlSessionFactory : context.getBeansOfType(SqlSessionFactory.class).values()) {
-            sqlSessionFactory.getConfiguration().addInterceptor(tenantSqlInterceptor);
+            if (tenantProperties.isInterceptorAutoRegister() && !sqlSessionFactory.getConfiguration().getInterceptors().contains(tenantSqlInterceptor)) {
+                sqlSessionFactory.getConfiguration().addInterceptor(tenantSqlInterceptor);
+                if (tenantShardRouter != null && !this.isRoutingDataSource(sqlSessionFactory)) {
+                    log.warn("tenant routing is enabled, but the data source of {} is not a TenantRoutingDataSource, statements will not be routed by tenant",
+                            sqlSessionFactory);
+                }
+            }
+            this.checkInterceptorOrder(sqlSessionFactory);
+        }
+    }
+
+    /**
+     * 检查分页插件是否位于 TenantSqlInterceptor 的内层，即在其之前注册。手动注册时同样检查。
+     *
+     * @param sqlSessionFactory SQL 会话工厂
+     */
+    private void checkInterceptorOrder(SqlSessionFactory sqlSessionFactory) {
+        List<Interceptor> interceptors = sqlSessionFactory.getConfiguration().getInterceptors();
+        int tenantIndex = -1;
+        for (int i = 0; i < interceptors.size(); i++) {
+            Interceptor interceptor = interceptors.get(i);
+            if (interceptor instanceof TenantSqlInterceptor) {
+                tenantIndex = i;
+            } else if (tenantIndex >= 0 && PAGINATION_INTERCEPTORS.contains(interceptor.getClass().getName())) {
+                log.warn("{} of {} is registered after the tenant interceptor and wraps it, its count statements are rewritten separately "
+                                + "and tenant.filter-additional is required for @TenantFilter, register the tenant interceptor after it",
+                        interceptor.getClass().getName(), sqlSessionFactory);
+            }
+        }
+    }
+
+    /**
+     * 检查 SqlSessionFactory 所使用的数据源是否为（或包装了）按租户路由的数据源。
+     *
+     * @param sqlSessionFactory SQL 会话工厂
+     * @return 是路由数据源则为true
+     */
+    private boolean isRoutingDataSource(SqlSessionFactory sqlSessionFactory) {
+        Environment environment = sqlSessionFactory.getConfiguration().getEnvironment();
+        if (environment == null || environment.getDataSource() == null) {
+            return false;
+        }
+        DataSource dataSource = environment.getDataSource();
+        try {
+            return dataSource.isWrapperFor(TenantRoutingDataSource.class);
+        } catch (SQLException e) {
+            return false;
         }
     }
 
     public MybatisInterceptorAutoRegister(TenantProperties tenantProperties, TenantSqlInterceptor tenantSqlInterceptor, ApplicationContext context) {
+        this(tenantProperties, tenantSqlInterceptor, context, null);
+    }
+
+    public MybatisInterceptorAutoRegister(TenantProperties tenantProperties, TenantSqlInterceptor tenantSqlInterceptor, ApplicationContext context,
+                                          TenantShardRouter tenantShardRouter) {
         this.tenantProperties = tenantProperties;
         this.tenantSqlInterceptor = tenantSqlInterceptor;
         this.context = context;
+        this.tenantShardRouter = tenantShardRouter;
     }
 
 }
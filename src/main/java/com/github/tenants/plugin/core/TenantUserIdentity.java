@@ -1,5 +1,6 @@
 package com.github.tenants.plugin.core;
 
+import com.github.tenants.plugin.core.context.TenantContext;
 import com.github.tenants.plugin.ex.TenantException;
 
 /**
@@ -24,7 +25,18 @@ public abstract class TenantUserIdentity {
         this.next = next;
     }
 
+    /**
+     * 沿责任链获取租户用户标识。
+     * 当前线程通过 {@link TenantContext} 绑定了租户时，直接返回绑定的租户，不再执行责任链。
+     *
+     * @return 租户用户标识
+     * @throws TenantException 如果责任链中没有任何实现提供租户用户标识
+     */
     final public long doGetTenantUserIdentity() {
+        Long bound = TenantContext.current();
+        if (bound != null) {
+            return bound;
+        }
         TenantUserIdentity current = this;
         do {
             try {
@@ -0,0 +1,256 @@
+package com.github.tenants.plugin.core.admission;
+
+import com.github.tenants.plugin.TenantProperties;
+import com.github.tenants.plugin.ex.TenantThrottledException;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 按租户限制sql的并发数与执行速率，避免单个租户占满连接池影响其他租户。
+ * <p>
+ * 每个租户的限制状态在第一次执行时创建，长时间未执行的租户会被清理。
+ * 并发数使用 Semaphore 限制；速率使用 GCRA 算法限制，只需对一个 AtomicLong 做CAS，无需加锁。
+ * 达到限制时按照 {@link TenantProperties.AdmissionMode} 等待或直接拒绝，拒绝时抛出 {@link TenantThrottledException}。
+ *
+ * @author xierh
+ * @since 2026/10/19 22:30
+ */
+public class TenantAdmissionController {
+
+    private final ConcurrentMap<Long, TenantPermits> tenantPermitsMap = new ConcurrentHashMap<>();
+
+    private final int maxConcurrent;
+
+    /**
+     * 相邻两次执行的最小间隔（纳秒），不限制速率时为0
+     */
+    private final long intervalNanos;
+
+    /**
+     * 允许突发执行的时间容差（纳秒）
+     */
+    private final long burstNanos;
+
+    private final boolean waitOnLimit;
+
+    private final long waitTimeoutNanos;
+
+    private final long idleTimeoutNanos;
+
+    private final AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+
+    private final LongAdder admitted = new LongAdder();
+
+    private final LongAdder throttled = new LongAdder();
+
+    private final LongAdder waited = new LongAdder();
+
+    private final LongAdder waitNanos = new LongAdder();
+
+    /**
+     * 使用给定的配置构造一个 TenantAdmissionController 对象。
+     *
+     * @param admission 租户限流的配置
+     */
+    public TenantAdmissionController(TenantProperties.Admission admission) {
+        this.maxConcurrent = admission.getMaxConcurrent();
+        this.intervalNanos = admission.getRate() > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / admission.getRate()) : 0;
+        int burst = admission.getBurst() > 0 ? admission.getBurst() : (int) Math.max(1, Math.ceil(admission.getRate()));
+        this.burstNanos = intervalNanos * (burst - 1);
+        this.waitOnLimit = TenantProperties.AdmissionMode.WAIT.equals(admission.getMode());
+        this.waitTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, admission.getWaitTimeout()));
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, admission.getIdleTimeout()));
+    }
+
+    /**
+     * 为租户的一次执行获取许可，执行完成后需调用 {@link #release(TenantPermits)} 归还。
+     *
+     * @param tenantId 租户标识
+     * @return 租户的许可
+     * @throws TenantThrottledException 如果超过限制，且不等待或等待超时
+     */
+    public TenantPermits acquire(long tenantId) {
+        long now = System.nanoTime();
+        this.sweepIfNeeded(now);
+        TenantPermits permits = tenantPermitsMap.computeIfAbsent(tenantId, id -> new TenantPermits(maxConcurrent));
+        permits.lastUsed = now;
+        long deadline = now + (waitOnLimit ? waitTimeoutNanos : 0);
+        long rateWait = this.acquireRate(permits, now, deadline);
+        if (rateWait < 0) {
+            throw this.throttle(tenantId, permits, "rate limit");
+        }
+        if (rateWait > 0) {
+            LockSupport.parkNanos(rateWait);
+        }
+        boolean queued = rateWait > 0;
+        if (permits.semaphore != null && !permits.semaphore.tryAcquire()) {
+            queued = true;
+            if (!this.acquireConcurrency(permits, deadline)) {
+                // 未能执行，归还预约的执行时间，被拒绝的sql不占用租户的速率
+                this.releaseRate(permits);
+                throw this.throttle(tenantId, permits, "concurrency limit of " + maxConcurrent);
+            }
+        }
+        if (queued) {
+            waited.increment();
+            waitNanos.add(System.nanoTime() - now);
+        }
+        admitted.increment();
+        return permits;
+    }
+
+    /**
+     * 归还许可。
+     *
+     * @param permits 获取到的许可
+     */
+    public void release(TenantPermits permits) {
+        if (permits.semaphore != null) {
+            permits.semaphore.release();
+        }
+    }
+
+    /**
+     * 按 GCRA 算法预约一次执行的时间。
+     *
+     * @return 需要等待的纳秒数，超过截止时间无法执行时返回-1
+     */
+    private long acquireRate(TenantPermits permits, long now, long deadline) {
+        if (intervalNanos <= 0) {
+            return 0;
+        }
+        while (true) {
+            long theoretical = permits.theoreticalArrival.get();
+            long start = Math.max(theoretical, now);
+            long allowedAt = start - burstNanos;
+            if (allowedAt > deadline) {
+                return -1;
+            }
+            if (permits.theoreticalArrival.compareAndSet(theoretical, start + intervalNanos)) {
+                return Math.max(0, allowedAt - now);
+            }
+        }
+    }
+
+    /**
+     * 归还 {@link #acquireRate} 预约的一次执行。预约之后其他执行的预约已顺延，归还时将理论时间整体提前一个间隔，效果相同。
+     */
+    private void releaseRate(TenantPermits permits) {
+        if (intervalNanos > 0) {
+            permits.theoreticalArrival.addAndGet(-intervalNanos);
+        }
+    }
+
+    private boolean acquireConcurrency(TenantPermits permits, long deadline) {
+        long timeout = deadline - System.nanoTime();
+        if (timeout <= 0) {
+            return false;
+        }
+        try {
+            return permits.semaphore.tryAcquire(timeout, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private TenantThrottledException throttle(long tenantId, TenantPermits permits, String limit) {
+        throttled.increment();
+        permits.throttled.increment();
+        return new TenantThrottledException(tenantId, "statement of tenant " + tenantId + " is throttled by " + limit);
+    }
+
+    /**
+     * 清理长时间未执行且没有执行中sql的租户，每个空闲周期最多清理一次。
+     * 清理与获取许可之间存在竞争时，最多使该租户的限制短暂失效一次，不影响正确性。
+     */
+    private void sweepIfNeeded(long now) {
+        long last = lastSweep.get();
+        if (now - last < idleTimeoutNanos || !lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+        Iterator<TenantPermits> iterator = tenantPermitsMap.values().iterator();
+        while (iterator.hasNext()) {
+            TenantPermits permits = iterator.next();
+            if (now - permits.lastUsed >= idleTimeoutNanos && permits.getActive() == 0) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 获取当前记录的、被拒绝过的租户及其被拒绝的次数。
+     *
+     * @return 租户标识与被拒绝的次数，按被拒绝次数从大到小排列
+     */
+    public Map<Long, Long> getThrottledTenants() {
+        List<Map.Entry<Long, Long>> entries = new ArrayList<>();
+        tenantPermitsMap.forEach((tenantId, permits) -> {
+            long count = permits.throttled.sum();
+            if (count > 0) {
+                entries.add(new AbstractMap.SimpleEntry<>(tenantId, count));
+            }
+        });
+        entries.sort(Map.Entry.<Long, Long>comparingByValue().reversed());
+        Map<Long, Long> result = new LinkedHashMap<>();
+        for (Map.Entry<Long, Long> entry : entries) {
+            result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    public long getAdmittedCount() {
+        return admitted.sum();
+    }
+
+    public long getThrottledCount() {
+        return throttled.sum();
+    }
+
+    public long getWaitedCount() {
+        return waited.sum();
+    }
+
+    public long getWaitNanos() {
+        return waitNanos.sum();
+    }
+
+    public int getTrackedTenantCount() {
+        return tenantPermitsMap.size();
+    }
+
+    /**
+     * 单个租户的限制状态。
+     */
+    public static final class TenantPermits {
+
+        private final Semaphore semaphore;
+
+        private final int maxConcurrent;
+
+        /**
+         * GCRA 算法中下一次执行的理论时间
+         */
+        private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE / 2);
+
+        private final LongAdder throttled = new LongAdder();
+
+        private volatile long lastUsed;
+
+        private TenantPermits(int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+            this.semaphore = maxConcurrent > 0 ? new Semaphore(maxConcurrent) : null;
+        }
+
+        private int getActive() {
+            return semaphore == null ? 0 : maxConcurrent - semaphore.availablePermits();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.github.tenants.plugin.core.advisor;
+
+import com.github.tenants.plugin.mapper.StructureMapper;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * 在自动读取多租户表时检查租户字段的索引。
+ * <p>
+ * 优先查询 INFORMATION_SCHEMA.STATISTICS，数据库不支持时改用 {@link DatabaseMetaData#getIndexInfo} 逐表查询。
+ * 两种方式都只检查当前连接的schema，同一数据库服务中其他schema的同名表不影响检查结果。
+ * 检查失败不影响插件初始化，只输出警告日志。
+ *
+ * @author xierh
+ * @since 2026/10/19 22:50
+ */
+public final class TenantIndexAdvisor {
+
+    private static final Logger log = LoggerFactory.getLogger(TenantIndexAdvisor.class);
+
+    private TenantIndexAdvisor() {
+    }
+
+    /**
+     * 查询给定的表中存在以给定字段开头的索引的表。
+     *
+     * @param sqlSessionFactory SQL 会话工厂，需已注册 StructureMapper
+     * @param column            租户字段
+     * @param tables            包含该字段的表
+     * @return 存在索引的表名（大写），无法查询时返回null
+     */
+    public static Set<String> findIndexedTables(SqlSessionFactory sqlSessionFactory, String column, Collection<String> tables) {
+        Set<String> indexed = new HashSet<>();
+        try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+            String schema = currentSchema(sqlSession.getConnection());
+            if (schema != null) {
+                for (String table : sqlSession.getMapper(StructureMapper.class).queryTablesByLeadingIndexColumn(schema, column)) {
+                    indexed.add(table.toUpperCase());
+                }
+                return indexed;
+            }
+        } catch (PersistenceException e) {
+            log.debug("INFORMATION_SCHEMA.STATISTICS is not available, use jdbc metadata instead: {}", e.toString());
+        }
+        // 使用新的会话，避免上一次查询失败后事务处于中止状态
+        try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+            Connection connection = sqlSession.getConnection();
+            DatabaseMetaData metaData = connection.getMetaData();
+            String schema = connection.getSchema();
+            for (String table : tables) {
+                try (ResultSet resultSet = metaData.getIndexInfo(connection.getCatalog(), schema, table, false, true)) {
+                    while (resultSet.next()) {
+                        if (resultSet.getShort("ORDINAL_POSITION") == 1 && column.equalsIgnoreCase(resultSet.getString("COLUMN_NAME"))) {
+                            indexed.add(table.toUpperCase());
+                            break;
+                        }
+                    }
+                }
+            }
+            return indexed;
+        } catch (SQLException | PersistenceException e) {
+            log.warn("failed to inspect indexes of tenant column {}: {}", column, e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * 获取连接当前所在的schema。mysql 的schema即catalog，{@link Connection#getSchema()} 返回null。
+     *
+     * @param connection 数据库连接
+     * @return 当前schema，无法获取时返回null
+     */
+    private static String currentSchema(Connection connection) {
+        try {
+            String schema = connection.getSchema();
+            return schema != null ? schema : connection.getCatalog();
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 汇总多租户表的索引检查结果，存在缺少索引的表时输出警告日志。
+     * 表包含多个租户字段时，任意一个租户字段存在索引即视为存在索引。
+     *
+     * @param targetTables        多租户表，已排除不需要多租户的表
+     * @param columnTables        租户字段与包含该字段的表
+     * @param columnIndexedTables 租户字段与存在以该字段开头的索引的表（大写），未能检查的字段不包含在内
+     * @return 检查结果
+     */
+    public static TenantIndexReport report(Collection<String> targetTables, Map<String, List<String>> columnTables,
+                                           Map<String, Set<String>> columnIndexedTables) {
+        Set<String> targets = new HashSet<>();
+        for (String table : targetTables) {
+            targets.add(table.toUpperCase());
+        }
+        Map<String, String> unindexed = new HashMap<>();
+        Set<String> indexed = new HashSet<>();
+        Set<String> checked = new HashSet<>();
+        for (Map.Entry<String, Set<String>> entry : columnIndexedTables.entrySet()) {
+            for (String table : columnTables.getOrDefault(entry.getKey(), Collections.emptyList())) {
+                String key = table.toUpperCase();
+                if (!targets.contains(key)) {
+                    continue;
+                }
+                checked.add(key);
+                if (entry.getValue().contains(key)) {
+                    indexed.add(key);
+                    unindexed.remove(table);
+                } else if (!indexed.contains(key)) {
+                    unindexed.put(table, entry.getKey());
+                }
+            }
+        }
+        TenantIndexReport report = new TenantIndexReport(checked.size(), unindexed);
+        if (!unindexed.isEmpty()) {
+            log.warn("{} of {} tenant tables have no index leading with the tenant column, queries on them will scan the whole table: {}",
+                    unindexed.size(), checked.size(), report.getUnindexedTables());
+        }
+        return report;
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.tenants.plugin.core.advisor;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 多租户表的索引检查结果。
+ * <p>
+ * 记录没有以租户字段开头的索引的多租户表，这些表上追加的租户条件无法使用索引，查询时通常需要全表扫描。
+ *
+ * @author xierh
+ * @since 2026/10/19 22:50
+ */
+public class TenantIndexReport {
+
+    private final int checkedTableCount;
+
+    private final Map<String, String> unindexedTables;
+
+    /**
+     * 使用给定的参数构造一个 TenantIndexReport 对象。
+     *
+     * @param checkedTableCount 检查的多租户表数量
+     * @param unindexedTables   缺少租户字段索引的表与其租户字段
+     */
+    public TenantIndexReport(int checkedTableCount, Map<String, String> unindexedTables) {
+        this.checkedTableCount = checkedTableCount;
+        this.unindexedTables = Collections.unmodifiableMap(new TreeMap<>(unindexedTables));
+    }
+
+    public int getCheckedTableCount() {
+        return checkedTableCount;
+    }
+
+    /**
+     * 获取缺少租户字段索引的多租户表。
+     *
+     * @return 表名与其租户字段，按表名排列
+     */
+    public Map<String, String> getUnindexedTables() {
+        return unindexedTables;
+    }
+
+    /**
+     * 给定的表是否存在以租户字段开头的索引。
+     *
+     * @param table 表名，不区分大小写
+     * @return 存在索引，或不是检查过的多租户表时返回true
+     */
+    public boolean isIndexed(String table) {
+        for (String unindexed : unindexedTables.keySet()) {
+            if (unindexed.equalsIgnoreCase(table)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "TenantIndexReport{checkedTableCount=" + checkedTableCount + ", unindexedTables=" + unindexedTables + '}';
+    }
+}
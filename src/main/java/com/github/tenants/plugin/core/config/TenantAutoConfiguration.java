@@ -1,20 +1,31 @@
 package com.github.tenants.plugin.core.config;
 
 import com.github.tenants.plugin.TenantProperties;
-import com.github.tenants.plugin.cache.PluginCache;
+import com.github.tenants.plugin.cache.TenantCacheEndpoint;
 import com.github.tenants.plugin.comparator.TenantChainOrderComparator;
 import com.github.tenants.plugin.core.MybatisInterceptorAutoRegister;
 import com.github.tenants.plugin.core.TenantUserIdentity;
+import com.github.tenants.plugin.core.context.TenantContextTaskDecorator;
+import com.github.tenants.plugin.core.init.TenantPluginHealthIndicator;
+import com.github.tenants.plugin.core.init.TenantPluginInitializer;
 import com.github.tenants.plugin.core.interceptor.TenantSqlInterceptor;
+import com.github.tenants.plugin.core.routing.TenantShardMapping;
+import com.github.tenants.plugin.core.routing.TenantShardRouter;
+import com.github.tenants.plugin.core.telemetry.TenantTelemetryEndpoint;
 import com.github.tenants.plugin.ex.TenantException;
 import org.apache.ibatis.session.SqlSessionFactory;
-import org.omg.CORBA.SystemException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
 
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -34,7 +45,7 @@ import java.util.Map;
 @Configuration
 @EnableConfigurationProperties(TenantProperties.class)
 @ConditionalOnClass({SqlSessionFactory.class, TenantProperties.class, TenantUserIdentity.class})
-public class TenantAutoConfiguration implements CommandLineRunner {
+public class TenantAutoConfiguration implements CommandLineRunner, SmartInitializingSingleton {
 
     public TenantUserIdentity tenantUserImplement;
 
@@ -45,17 +56,58 @@ public class TenantAutoConfiguration implements CommandLineRunner {
     /**
      * 初始化租户配置实例。
      *
-     * @throws SystemException 如果目标租户列配置为空
+     * @throws TenantException 如果找不到租户实现类
      */
     @Bean
-    public TenantSqlInterceptor tenantSqlInterceptorReg() {
+    public TenantSqlInterceptor tenantSqlInterceptorReg(TenantPluginInitializer tenantPluginInitializer) {
         this.frameworkStart();
-        return new TenantSqlInterceptor();
+        TenantSqlInterceptor tenantSqlInterceptor = new TenantSqlInterceptor();
+        tenantSqlInterceptor.setTenantPluginInitializer(tenantPluginInitializer);
+        return tenantSqlInterceptor;
     }
 
+    /**
+     * 注册插件初始化器，负责构建插件缓存并提供插件的就绪状态。
+     *
+     * @return 插件初始化器
+     * @see TenantProperties.Init
+     */
+    @Bean
+    public TenantPluginInitializer tenantPluginInitializer() {
+        return new TenantPluginInitializer(context, tenantProperties);
+    }
+
+    @Bean
+    public MybatisInterceptorAutoRegister mybatisInterceptorAutoRegister(TenantSqlInterceptor tenantSqlInterceptor,
+                                                                         ObjectProvider<TenantShardRouter> tenantShardRouter) {
+        return new MybatisInterceptorAutoRegister(tenantProperties, tenantSqlInterceptor, context, tenantShardRouter.getIfAvailable());
+    }
+
+    /**
+     * 启用分片路由时，注册租户分片路由器。
+     *
+     * @param tenantShardMapping 用户提供的租户与分片映射，可以不提供
+     * @return 租户分片路由器
+     * @see com.github.tenants.plugin.core.routing.TenantRoutingDataSource
+     */
     @Bean
-    public MybatisInterceptorAutoRegister mybatisInterceptorAutoRegister(TenantSqlInterceptor tenantSqlInterceptor) {
-        return new MybatisInterceptorAutoRegister(tenantProperties, tenantSqlInterceptor,context);
+    @ConditionalOnProperty(prefix = "tenant.routing", name = "enabled", havingValue = "true")
+    @ConditionalOnClass(name = "org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource")
+    public TenantShardRouter tenantShardRouter(ObjectProvider<TenantShardMapping> tenantShardMapping) {
+        return new TenantShardRouter(tenantProperties.getRouting(), tenantShardMapping.getIfAvailable());
+    }
+
+    /**
+     * 开启 tenant.task-decorator 时注册传递租户上下文的任务装饰器，使 @Async 等由 Spring 任务线程池执行的方法可以获取到调用方的租户。
+     * 默认不注册，避免改变已有线程池的行为；容器中已存在 TaskDecorator 时不注册，此时可以在自定义的装饰器中使用 TenantContext 传递租户。
+     *
+     * @return 任务装饰器
+     */
+    @Bean
+    @ConditionalOnMissingBean(TaskDecorator.class)
+    @ConditionalOnProperty(prefix = "tenant", name = "task-decorator", havingValue = "true")
+    public TenantContextTaskDecorator tenantContextTaskDecorator() {
+        return new TenantContextTaskDecorator();
     }
 
     /**
@@ -86,12 +138,65 @@ public class TenantAutoConfiguration implements CommandLineRunner {
         this.tenantProperties = tenantProperties;
     }
 
+    /**
+     * 异步初始化时，所有单例创建完成后即在后台开始初始化，不等待容器启动完成。
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (tenantProperties.getInit().isAsync()) {
+            context.getBean(TenantPluginInitializer.class).initializeAsync(tenantUserImplement);
+        }
+    }
+
     @Override
     public void run(String... args) {
-        Map<String, SqlSessionFactory> beansOfType = context.getBeansOfType(SqlSessionFactory.class);
-        if (beansOfType.isEmpty()) {
-            throw new TenantException("no SqlSessionFactory found");
+        if (!tenantProperties.getInit().isAsync()) {
+            context.getBean(TenantPluginInitializer.class).initialize(tenantUserImplement);
+        }
+    }
+
+    /**
+     * 存在 spring-boot-actuator 时，注册插件就绪状态的健康检查。
+     */
+    @Configuration
+    @ConditionalOnClass(name = "org.springframework.boot.actuate.health.HealthIndicator")
+    static class TenantHealthConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean(name = "tenantPluginHealthIndicator")
+        public TenantPluginHealthIndicator tenantPluginHealthIndicator(TenantPluginInitializer tenantPluginInitializer,
+                                                                       TenantProperties tenantProperties) {
+            return new TenantPluginHealthIndicator(tenantPluginInitializer, tenantProperties);
+        }
+    }
+
+    /**
+     * 存在 spring-boot-actuator 且开启统计或租户限流时，注册按租户统计sql执行情况与限流情况的端点。
+     */
+    @Configuration
+    @ConditionalOnClass(name = "org.springframework.boot.actuate.endpoint.annotation.Endpoint")
+    @ConditionalOnExpression("${tenant.telemetry.enabled:false} or ${tenant.admission.enabled:false}")
+    static class TenantTelemetryConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public TenantTelemetryEndpoint tenantTelemetryEndpoint() {
+            return new TenantTelemetryEndpoint();
+        }
+    }
+
+    /**
+     * 存在 spring-boot-actuator 时，注册查看与管理插件缓存的端点。
+     */
+    @Configuration
+    @ConditionalOnClass(name = "org.springframework.boot.actuate.endpoint.annotation.Endpoint")
+    static class TenantCacheConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public TenantCacheEndpoint tenantCacheEndpoint(TenantPluginInitializer tenantPluginInitializer,
+                                                       ObjectProvider<SqlSessionFactory> sqlSessionFactories) {
+            return new TenantCacheEndpoint(tenantPluginInitializer, sqlSessionFactories);
         }
-        new PluginCache(new ArrayList<>(beansOfType.values()),tenantProperties, tenantUserImplement);
     }
 }
@@ -0,0 +1,187 @@
+package com.github.tenants.plugin.core.context;
+
+import com.github.tenants.plugin.cache.PluginCache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 租户上下文，用于在线程之间传递已经解析好的租户标识。
+ * <p>
+ * {@link com.github.tenants.plugin.core.TenantUserIdentity} 的实现通常从 ThreadLocal（如请求上下文）中获取租户，
+ * 在线程池、CompletableFuture、@Async 或虚拟线程中执行sql时会获取不到租户。
+ * 租户上下文在提交任务的线程中捕获租户，在执行任务的线程中绑定该租户，
+ * 绑定期间 {@code doGetTenantUserIdentity()} 直接返回绑定的租户，不会再执行租户获取责任链。
+ * <p>
+ * 用法：
+ * <pre>
+ * <code>
+ * // 以类似 ScopedValue 的方式在指定租户下执行
+ * TenantContext.where(tenantId).run(() -&gt; mapper.selectList());
+ * // 捕获当前租户，传递到其他线程
+ * TenantContext.Carrier carrier = TenantContext.capture();
+ * CompletableFuture.supplyAsync(() -&gt; carrier.call(mapper::selectList), executor);
+ * // 包装线程池，提交的任务自动携带提交时的租户
+ * ExecutorService executorService = TenantContext.wrap(Executors.newFixedThreadPool(8));
+ * </code>
+ * </pre>
+ *
+ * @author xierh
+ * @since 2026/10/19 16:10
+ */
+public final class TenantContext {
+
+    private static final ThreadLocal<Long> CURRENT_TENANT = new ThreadLocal<>();
+
+    private TenantContext() {
+    }
+
+    /**
+     * 获取当前线程绑定的租户标识。
+     *
+     * @return 租户标识，未绑定时返回null
+     */
+    public static Long current() {
+        return CURRENT_TENANT.get();
+    }
+
+    /**
+     * 创建一个携带指定租户的载体。
+     *
+     * @param tenantId 租户标识
+     * @return 租户载体
+     */
+    public static Carrier where(long tenantId) {
+        return new Carrier(tenantId);
+    }
+
+    /**
+     * 捕获当前线程的租户。
+     * 当前线程未绑定租户时，执行一次租户获取责任链，之后传递的是解析结果而不是责任链本身。
+     *
+     * @return 租户载体，无法获取租户时载体不携带租户
+     */
+    public static Carrier capture() {
+        Long tenantId = CURRENT_TENANT.get();
+        if (tenantId == null) {
+            PluginCache pluginCache = PluginCache.getInst();
+            if (pluginCache != null && pluginCache.tenantUserImplement != null) {
+                try {
+                    tenantId = pluginCache.tenantUserImplement.doGetTenantUserIdentity();
+                } catch (RuntimeException e) {
+                    // 提交任务的线程可能本身就没有租户（如定时任务），此时不传递租户
+                    tenantId = null;
+                }
+            }
+        }
+        return new Carrier(tenantId);
+    }
+
+    /**
+     * 包装线程池，提交的任务会携带提交时的租户。
+     *
+     * @param executor 被包装的线程池
+     * @return 包装后的线程池
+     */
+    public static Executor wrap(Executor executor) {
+        return new TenantContextExecutor(executor);
+    }
+
+    /**
+     * 包装线程池，提交的任务会携带提交时的租户。
+     *
+     * @param executorService 被包装的线程池
+     * @return 包装后的线程池
+     */
+    public static ExecutorService wrap(ExecutorService executorService) {
+        return new TenantContextExecutorService(executorService);
+    }
+
+    /**
+     * 租户载体，持有一个已经解析好的租户标识，可以在任意线程中以该租户执行任务。
+     * 执行结束后恢复执行前线程上绑定的租户，因此可以嵌套使用，也不会污染线程池中的线程。
+     */
+    public static final class Carrier {
+
+        private final Long tenantId;
+
+        private Carrier(Long tenantId) {
+            this.tenantId = tenantId;
+        }
+
+        public Long getTenantId() {
+            return tenantId;
+        }
+
+        /**
+         * 以载体携带的租户执行任务。
+         *
+         * @param runnable 任务
+         */
+        public void run(Runnable runnable) {
+            Long previous = this.bind();
+            try {
+                runnable.run();
+            } finally {
+                restore(previous);
+            }
+        }
+
+        /**
+         * 以载体携带的租户执行任务。
+         *
+         * @param callable 任务
+         * @param <T>      任务结果的类型
+         * @return 任务结果
+         * @throws Exception 任务抛出的异常
+         */
+        public <T> T call(Callable<T> callable) throws Exception {
+            Long previous = this.bind();
+            try {
+                return callable.call();
+            } finally {
+                restore(previous);
+            }
+        }
+
+        /**
+         * 包装任务，包装后的任务无论在哪个线程执行，都使用载体携带的租户。
+         *
+         * @param runnable 任务
+         * @return 包装后的任务
+         */
+        public Runnable wrap(Runnable runnable) {
+            return () -> this.run(runnable);
+        }
+
+        /**
+         * 包装任务，包装后的任务无论在哪个线程执行，都使用载体携带的租户。
+         *
+         * @param callable 任务
+         * @param <T>      任务结果的类型
+         * @return 包装后的任务
+         */
+        public <T> Callable<T> wrap(Callable<T> callable) {
+            return () -> this.call(callable);
+        }
+
+        private Long bind() {
+            Long previous = CURRENT_TENANT.get();
+            if (tenantId == null) {
+                CURRENT_TENANT.remove();
+            } else {
+                CURRENT_TENANT.set(tenantId);
+            }
+            return previous;
+        }
+
+        private static void restore(Long previous) {
+            if (previous == null) {
+                CURRENT_TENANT.remove();
+            } else {
+                CURRENT_TENANT.set(previous);
+            }
+        }
+    }
+}
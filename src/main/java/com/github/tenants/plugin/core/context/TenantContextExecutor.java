@@ -0,0 +1,24 @@
+package com.github.tenants.plugin.core.context;
+
+import java.util.concurrent.Executor;
+
+/**
+ * 传递租户上下文的线程池包装，提交的任务会携带提交时的租户。
+ *
+ * @author xierh
+ * @see TenantContext#wrap(Executor)
+ * @since 2026/10/19 16:40
+ */
+public class TenantContextExecutor implements Executor {
+
+    private final Executor delegate;
+
+    public TenantContextExecutor(Executor delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        delegate.execute(TenantContext.capture().wrap(command));
+    }
+}
@@ -0,0 +1,18 @@
+package com.github.tenants.plugin.core.context;
+
+import org.springframework.core.task.TaskDecorator;
+
+/**
+ * 传递租户上下文的 Spring 任务装饰器。
+ * Spring Boot 会将容器中的 TaskDecorator 应用到自动配置的任务线程池上，因此 @Async 方法可以获取到调用方的租户。
+ *
+ * @author xierh
+ * @since 2026/10/19 16:52
+ */
+public class TenantContextTaskDecorator implements TaskDecorator {
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        return TenantContext.capture().wrap(runnable);
+    }
+}
@@ -0,0 +1,46 @@
+package com.github.tenants.plugin.core.init;
+
+import com.github.tenants.plugin.TenantProperties;
+import com.github.tenants.plugin.cache.PluginCache;
+import com.github.tenants.plugin.core.advisor.TenantIndexReport;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+
+/**
+ * 插件就绪状态的健康检查，存在 spring-boot-actuator 时注册。
+ * 初始化期间为 OUT_OF_SERVICE，完成后为 UP，失败时为 DOWN，可用于容器的就绪探针。
+ *
+ * @author xierh
+ * @since 2026/10/19 20:05
+ */
+public class TenantPluginHealthIndicator extends AbstractHealthIndicator {
+
+    private final TenantPluginInitializer tenantPluginInitializer;
+
+    private final TenantProperties tenantProperties;
+
+    public TenantPluginHealthIndicator(TenantPluginInitializer tenantPluginInitializer, TenantProperties tenantProperties) {
+        this.tenantPluginInitializer = tenantPluginInitializer;
+        this.tenantProperties = tenantProperties;
+    }
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        switch (tenantPluginInitializer.getState()) {
+            case READY:
+                builder.up().withDetail("targetTables",
+                        tenantProperties.getTargetTables() == null ? 0 : tenantProperties.getTargetTables().size());
+                TenantIndexReport tenantIndexReport = PluginCache.getInst().getTenantIndexReport();
+                if (tenantIndexReport != null) {
+                    builder.withDetail("unindexedTables", tenantIndexReport.getUnindexedTables());
+                }
+                break;
+            case FAILED:
+                builder.down(tenantPluginInitializer.getFailure());
+                break;
+            default:
+                builder.outOfService();
+        }
+        builder.withDetail("state", tenantPluginInitializer.getState());
+    }
+}
@@ -0,0 +1,276 @@
+package com.github.tenants.plugin.core.init;
+
+import com.github.tenants.plugin.TenantProperties;
+import com.github.tenants.plugin.cache.PluginCache;
+import com.github.tenants.plugin.cache.SqlRewriteStore;
+import com.github.tenants.plugin.core.TenantUserIdentity;
+import com.github.tenants.plugin.core.rewrite.TenantRewriteIndex;
+import com.github.tenants.plugin.core.routing.TenantShardRouter;
+import com.github.tenants.plugin.ex.TenantException;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.ApplicationContext;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 插件初始化器，负责构建 {@link PluginCache} 并提供插件的就绪状态。
+ * <p>
+ * 同步初始化在容器启动完成后执行，与之前的行为一致；异步初始化在所有单例创建完成后于后台线程执行，不阻塞容器启动。
+ * 两种方式下，mapper的扫描与数据库结构的查询都会在单独的线程池中并行执行。
+ * 初始化完成后发布 {@link TenantPluginReadyEvent}。
+ * <p>
+ * 异步初始化期间，拦截器通过 {@link #awaitReady()} 等待初始化完成，避免多租户表的sql在插件就绪前未经隔离直接执行。
+ * <p>
+ * 初始化完成后载入编译期生成的 {@link TenantRewriteIndex}；开启编译结果持久化时，同时从文件载入编译结果，应用关闭时再写回文件。
+ * <p>
+ * 插件缓存在上述内容全部载入后才发布为生效的实例，拦截器不会看到未载入完成的缓存。
+ * <p>
+ * 插件就绪后可以通过 {@link #rebuild()} 在不重启应用的情况下重建插件缓存。
+ *
+ * @author xierh
+ * @since 2026/10/19 20:05
+ */
+public class TenantPluginInitializer implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(TenantPluginInitializer.class);
+
+    public enum State {
+        /**
+         * 尚未开始或正在初始化
+         */
+        STARTING,
+        /**
+         * 初始化完成
+         */
+        READY,
+        /**
+         * 初始化失败
+         */
+        FAILED
+    }
+
+    private final ApplicationContext context;
+
+    private final TenantProperties tenantProperties;
+
+    private final CompletableFuture<PluginCache> future = new CompletableFuture<>();
+
+    /**
+     * 是否已开始异步初始化，开始后拦截器才会等待初始化完成
+     */
+    private volatile boolean async = false;
+
+    /**
+     * 编译结果的持久化存储，未开启持久化时为null
+     */
+    private volatile SqlRewriteStore sqlRewriteStore;
+
+    /**
+     * 初始化时使用的租户标识获取的责任链，重建时沿用
+     */
+    private volatile TenantUserIdentity tenantUserImplement;
+
+    public TenantPluginInitializer(ApplicationContext context, TenantProperties tenantProperties) {
+        this.context = context;
+        this.tenantProperties = tenantProperties;
+    }
+
+    /**
+     * 在当前线程初始化插件。
+     *
+     * @param tenantUserImplement 租户标识获取的责任链
+     * @return 插件缓存
+     * @throws TenantException 如果找不到 SqlSessionFactory，或初始化失败
+     */
+    public PluginCache initialize(TenantUserIdentity tenantUserImplement) {
+        long start = System.currentTimeMillis();
+        this.tenantUserImplement = tenantUserImplement;
+        try {
+            PluginCache pluginCache = this.buildPluginCache(tenantUserImplement);
+            this.loadRewriteStore(pluginCache);
+            pluginCache.publish();
+            future.complete(pluginCache);
+            log.info("multi tenant plugin initialized in {}ms, {} tenant tables", System.currentTimeMillis() - start,
+                    tenantProperties.getTargetTables() == null ? 0 : tenantProperties.getTargetTables().size());
+            context.publishEvent(new TenantPluginReadyEvent(pluginCache));
+            return pluginCache;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * 重建插件缓存：重新读取多租户表与过滤注解，丢弃所有编译结果，之后执行的sql重新解析。
+     * 重建期间正在执行的sql继续使用原来的插件缓存，重建完成后替换为新的实例。
+     * 重建时只载入编译期生成的改写索引，不再从持久化文件载入，避免重新载入有问题的编译结果。
+     * 执行统计与准入控制器不依赖多租户表，沿用原来的实例，统计数据与已占用的许可不会因重建而重置。
+     *
+     * @return 新的插件缓存
+     * @throws TenantException 如果插件尚未初始化完成，或重建失败
+     */
+    public synchronized PluginCache rebuild() {
+        if (this.getState() != State.READY) {
+            throw new TenantException("multi tenant plugin can not be rebuilt before it is ready");
+        }
+        long start = System.currentTimeMillis();
+        PluginCache pluginCache = this.buildPluginCache(tenantUserImplement);
+        PluginCache previous = PluginCache.getInst();
+        if (previous != null) {
+            pluginCache.inherit(previous);
+        }
+        SqlRewriteStore store = this.sqlRewriteStore;
+        if (store != null) {
+            // 多租户表可能已变化，写回时使用新的配置指纹
+            this.sqlRewriteStore = new SqlRewriteStore(store.getPath(), SqlRewriteStore.fingerprint(tenantProperties));
+        }
+        pluginCache.publish();
+        log.info("multi tenant plugin rebuilt in {}ms, {} tenant tables", System.currentTimeMillis() - start,
+                tenantProperties.getTargetTables() == null ? 0 : tenantProperties.getTargetTables().size());
+        return pluginCache;
+    }
+
+    /**
+     * 构建插件缓存并载入编译期生成的改写索引，返回的插件缓存尚未发布。
+     *
+     * @param tenantUserImplement 租户标识获取的责任链
+     * @return 插件缓存
+     */
+    private PluginCache buildPluginCache(TenantUserIdentity tenantUserImplement) {
+        ExecutorService executor = this.createExecutor();
+        try {
+            Map<String, SqlSessionFactory> beansOfType = context.getBeansOfType(SqlSessionFactory.class);
+            if (beansOfType.isEmpty()) {
+                throw new TenantException("no SqlSessionFactory found");
+            }
+            PluginCache pluginCache = new PluginCache(new ArrayList<>(beansOfType.values()), tenantProperties, tenantUserImplement,
+                    executor == null ? Runnable::run : executor);
+            pluginCache.setTenantShardRouter(context.getBeanProvider(TenantShardRouter.class).getIfAvailable());
+            int indexed = TenantRewriteIndex.load(context.getClassLoader() == null ? TenantPluginInitializer.class.getClassLoader()
+                    : context.getClassLoader(), tenantProperties, pluginCache.getTenantSqlCompiler().getSqlRewriteCache());
+            if (indexed > 0) {
+                log.info("loaded {} precompiled tenant sql from {}", indexed, TenantRewriteIndex.RESOURCE);
+            }
+            return pluginCache;
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * 在后台线程初始化插件，立即返回。
+     *
+     * @param tenantUserImplement 租户标识获取的责任链
+     */
+    public void initializeAsync(TenantUserIdentity tenantUserImplement) {
+        this.async = true;
+        Thread thread = new Thread(() -> {
+            try {
+                this.initialize(tenantUserImplement);
+            } catch (RuntimeException e) {
+                log.error("failed to initialize multi tenant plugin, statements on tenant tables will be rejected", e);
+            }
+        }, "tenant-init");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 等待异步初始化完成。
+     *
+     * @return 插件缓存，未开始异步初始化时返回null
+     * @throws TenantException 如果初始化失败，或等待超时
+     */
+    public PluginCache awaitReady() {
+        if (!async && !future.isDone()) {
+            return null;
+        }
+        long timeout = tenantProperties.getInit().getAwaitTimeout();
+        try {
+            return timeout > 0 ? future.get(timeout, TimeUnit.MILLISECONDS) : future.get();
+        } catch (TimeoutException e) {
+            throw new TenantException("multi tenant plugin is not ready after " + timeout + "ms");
+        } catch (ExecutionException e) {
+            throw new TenantException("multi tenant plugin failed to initialize", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TenantException("interrupted while waiting for multi tenant plugin", e);
+        }
+    }
+
+    /**
+     * 开启持久化时，按载入后的多租户表计算配置指纹并载入编译结果。
+     *
+     * @param pluginCache 插件缓存
+     */
+    private void loadRewriteStore(PluginCache pluginCache) {
+        TenantProperties.RewriteStore rewriteStore = tenantProperties.getRewriteStore();
+        if (rewriteStore == null || !rewriteStore.isEnabled()) {
+            return;
+        }
+        SqlRewriteStore store = new SqlRewriteStore(Paths.get(rewriteStore.getPath()), SqlRewriteStore.fingerprint(tenantProperties));
+        int loaded = store.load(pluginCache.getTenantSqlCompiler().getSqlRewriteCache());
+        log.info("loaded {} compiled tenant sql from {}", loaded, store.getPath());
+        this.sqlRewriteStore = store;
+    }
+
+    /**
+     * 应用关闭时将编译结果写回文件。
+     */
+    @Override
+    public void destroy() {
+        SqlRewriteStore store = this.sqlRewriteStore;
+        // 重建后写回当前生效的插件缓存
+        PluginCache pluginCache = future.isDone() ? PluginCache.getInst() : null;
+        if (store != null && pluginCache != null) {
+            int saved = store.save(pluginCache.getTenantSqlCompiler().getSqlRewriteCache());
+            log.info("saved {} compiled tenant sql to {}", saved, store.getPath());
+        }
+    }
+
+    public State getState() {
+        if (!future.isDone()) {
+            return State.STARTING;
+        }
+        return future.isCompletedExceptionally() ? State.FAILED : State.READY;
+    }
+
+    /**
+     * 获取初始化失败的原因。
+     *
+     * @return 失败原因，未失败时返回null
+     */
+    public Throwable getFailure() {
+        if (!future.isCompletedExceptionally()) {
+            return null;
+        }
+        try {
+            future.join();
+            return null;
+        } catch (CompletionException e) {
+            return e.getCause();
+        }
+    }
+
+    private ExecutorService createExecutor() {
+        int threads = tenantProperties.getInit().getThreads();
+        if (threads <= 1) {
+            return null;
+        }
+        AtomicInteger index = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "tenant-init-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,23 @@
+package com.github.tenants.plugin.core.init;
+
+import com.github.tenants.plugin.cache.PluginCache;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * 插件初始化完成时发布的事件，异步初始化时可以监听该事件得知多租户隔离已就绪。
+ *
+ * @author xierh
+ * @since 2026/10/19 20:05
+ */
+public class TenantPluginReadyEvent extends ApplicationEvent {
+
+    private static final long serialVersionUID = 1L;
+
+    public TenantPluginReadyEvent(PluginCache pluginCache) {
+        super(pluginCache);
+    }
+
+    public PluginCache getPluginCache() {
+        return (PluginCache) getSource();
+    }
+}
@@ -3,21 +3,13 @@ package com.github.tenants.plugin.core.interceptor;
 import com.github.tenants.plugin.TenantProperties;
 import com.github.tenants.plugin.annotation.TenantFilter;
 import com.github.tenants.plugin.cache.PluginCache;
-import net.sf.jsqlparser.JSQLParserException;
-import net.sf.jsqlparser.expression.Alias;
-import net.sf.jsqlparser.expression.Expression;
-import net.sf.jsqlparser.expression.LongValue;
-import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
-import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
-import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
-import net.sf.jsqlparser.expression.operators.relational.ItemsList;
-import net.sf.jsqlparser.parser.CCJSqlParserUtil;
-import net.sf.jsqlparser.schema.Column;
-import net.sf.jsqlparser.schema.Table;
-import net.sf.jsqlparser.statement.Statement;
-import net.sf.jsqlparser.statement.insert.Insert;
-import net.sf.jsqlparser.statement.select.*;
-import org.apache.ibatis.builder.StaticSqlSource;
+import com.github.tenants.plugin.core.admission.TenantAdmissionController;
+import com.github.tenants.plugin.core.init.TenantPluginInitializer;
+import com.github.tenants.plugin.core.rewrite.CompiledSql;
+import com.github.tenants.plugin.core.routing.TenantShardRouter;
+import com.github.tenants.plugin.core.telemetry.TenantTelemetry;
+import com.github.tenants.plugin.mapper.StructureMapper;
+import com.github.tenants.plugin.util.MybatisUtils;
 import org.apache.ibatis.cache.CacheKey;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.mapping.BoundSql;
@@ -32,10 +24,6 @@ import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 import org.springframework.util.CollectionUtils;
 
-import java.lang.reflect.Field;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
 
 /**
  * 此类是一个拦截器，用于在运行时修改 SQL 查询以基于租户 ID 添加多租户筛选条件。
@@ -53,8 +41,8 @@ import java.util.List;
  * 当调用 Executor 类的“query”方法并截获执行流时，将调用此方法。
  * 它通过添加多租户筛选条件来修改 SQL 查询，然后继续执行原始查询。
  * <p>
- * TenantSqlInterceptor 还包括用于解析和修改 SQL 查询的帮助程序方法。
- * 这些方法处理 SQL 查询的不同部分，例如 FROM 子句、JOIN 子句和 WHERE 子句。
+ * SQL 的解析和修改由 TenantSqlRewriter 完成，它处理 SQL 查询的不同部分，例如 FROM 子句、JOIN 子句和 WHERE 子句。
+ * 同一条 SQL 只会解析一次，编译结果缓存在 SqlRewriteCache 中，执行时只需拼接当前租户标识。
  * <p>
  * <p>
  * 要使用此拦截器，请在 MyBatis 配置中将其配置为拦截器：
@@ -91,6 +79,11 @@ public class TenantSqlInterceptor implements Interceptor {
 
     private TenantProperties tenantProperties;
 
+    /**
+     * 插件初始化器，异步初始化期间用于等待插件就绪，手动注册拦截器时可以为null。
+     */
+    private TenantPluginInitializer tenantPluginInitializer;
+
     /**
      * MyBatis拦截器，用于添加租户隔离信息，实现数据隔离。
      *
@@ -99,17 +92,58 @@ public class TenantSqlInterceptor implements Interceptor {
      */
     @Override
     public Object intercept(Invocation invocation) throws Throwable {
-        if (this.getTenantConfig() == null) {
-           return invocation.proceed();
+        if (this.getTenantConfig() == null && !this.awaitTenantConfig(invocation)) {
+            return invocation.proceed();
+        }
+        TenantShardRouter tenantShardRouter = this.getTenantConfig().getTenantShardRouter();
+        if (tenantShardRouter == null) {
+            return this.interceptTenantSql(invocation, null);
+        }
+        // 启用分片路由时，租户只获取一次，同时用于路由与sql改写；先将租户绑定到当前线程，执行时获取的连接将路由到该租户所在的分片
+        Long tenantId = tenantShardRouter.resolveTenant(this.getTenantConfig().tenantUserImplement);
+        Long previous = tenantShardRouter.bindRoutingTenant(tenantId);
+        try {
+            return this.interceptTenantSql(invocation, tenantId);
+        } finally {
+            tenantShardRouter.restoreRoutingTenant(previous);
+        }
+    }
+
+    /**
+     * 异步初始化期间等待插件就绪。插件自身查询数据库结构的sql不等待，否则初始化无法完成。
+     *
+     * @param invocation 拦截的调用
+     * @return 插件已就绪则为true，未开始异步初始化时为false
+     * @throws com.github.tenants.plugin.ex.TenantException 如果初始化失败，或等待超时
+     */
+    private boolean awaitTenantConfig(Invocation invocation) {
+        if (tenantPluginInitializer == null) {
+            return false;
         }
+        MappedStatement ms = (MappedStatement) invocation.getArgs()[0];
+        if (ms.getId().startsWith(StructureMapper.class.getName() + ".")) {
+            return false;
+        }
+        return tenantPluginInitializer.awaitReady() != null && this.getTenantConfig() != null;
+    }
+
+    /**
+     * 为sql添加租户隔离信息，并继续执行下一责任链。
+     *
+     * @param invocation     拦截的调用
+     * @param resolvedTenant 已获取的租户标识，未获取或获取失败时为null
+     * @return 下一责任链
+     * @throws Throwable 如果在拦截过程中出现任何错误
+     */
+    private Object interceptTenantSql(Invocation invocation, Long resolvedTenant) throws Throwable {
         Executor executor = (Executor) invocation.getTarget();
         Object[] args = invocation.getArgs();
         // 获取查询语句相关信息
         MappedStatement ms = (MappedStatement) args[0];
         // 取到的parameter可能是Map,看是否为@Param进行了多参数绑定，是则已被封装为一个Map
         Object parameter = args[1];
-        BoundSql boundSql = ms.getBoundSql(parameter);
-        CacheKey cacheKey = this.getCacheKey(args, executor);
+        // 6个参数时使用上一责任链提供的BoundSql，其sql可能已被其他拦截器修改
+        BoundSql boundSql = args.length == 6 ? (BoundSql) args[5] : ms.getBoundSql(parameter);
         SqlCommandType sqlCommandType = ms.getSqlCommandType();
         // 检查租户设置，根据过滤注解，可能需要跳过本次sql处理
         if (!CollectionUtils.isEmpty(this.getTenantConfig().getNameNFilter())) {
@@ -118,204 +152,62 @@ public class TenantSqlInterceptor implements Interceptor {
             if (tenantFilter != null && !tenantFilter.exclude()) {
                 // 使用注解进行不处理的跳过到下个责任处理点
                 if (SqlCommandType.SELECT.equals(sqlCommandType)) {
-                    return executor.query(ms, parameter, (RowBounds) args[2], (ResultHandler<?>) args[3], cacheKey, boundSql);
+                    return executor.query(ms, parameter, (RowBounds) args[2], (ResultHandler<?>) args[3], this.getCacheKey(args, executor), boundSql);
                 } else {
                     return executor.update(ms, parameter);
                 }
             }
         }
         // 否则，开始处理SQL，添加租户ID
-        String tenantsSql = boundSql.getSql();
-        // 通过反射将处理后的SQL语句设置回BoundSql对象，供后续的查询调用
-        Field field = boundSql.getClass().getDeclaredField("sql");
-        field.setAccessible(true);
+        CompiledSql compiledSql = this.getTenantConfig().getTenantSqlCompiler().compile(ms.getId(), boundSql.getSql());
+        // 同一条sql只会解析一次，之后只需要拼接当前的租户标识；不涉及多租户表时无需获取租户
+        // 已获取的租户直接使用，未获取到时仍通过责任链获取，无法获取租户时拒绝执行
+        Long tenantId = !compiledSql.isTenantAware() ? null
+                : resolvedTenant != null ? resolvedTenant : this.getTenantConfig().tenantUserImplement.doGetTenantUserIdentity();
+        if (tenantId != null) {
+            // 使用处理后的SQL语句生成新的BoundSql对象，供后续的查询调用
+            boundSql = MybatisUtils.copyBoundSql(ms.getConfiguration(), boundSql, compiledSql.render(tenantId));
+        }
+        // 开启租户限流时，先获取租户的执行许可，超过限制时等待或拒绝执行
+        TenantAdmissionController admissionController = tenantId == null ? null : this.getTenantConfig().getTenantAdmissionController();
+        TenantAdmissionController.TenantPermits permits = admissionController == null ? null : admissionController.acquire(tenantId);
+        TenantTelemetry tenantTelemetry = this.getTenantConfig().getTenantTelemetry();
+        long start = tenantTelemetry == null ? 0 : System.nanoTime();
+        boolean failed = true;
         try {
-            // 使用JSQLParser解析原始的SQL语句
-            Statement stmt = CCJSqlParserUtil.parse(tenantsSql);
-
-            // 判断解析出的SQL语句类型
+            Object result;
+            // 将处理过的SQL语句设置到参数中，代理完成
             if (SqlCommandType.SELECT.equals(sqlCommandType)) {
-                Select selectStmt = (Select) stmt;
-                SelectBody selectBody = selectStmt.getSelectBody();
-
-                this.handleSelectStmt(selectBody, this.getTenantConfig().tenantUserImplement.doGetTenantUserIdentity());
-                tenantsSql = selectBody.toString();
-            } else if (SqlCommandType.INSERT.equals(sqlCommandType)) {
-                // 如果是INSERT语句，进行相应的处理
-                this.handleInsertStmt(stmt);
-                tenantsSql = stmt.toString();
-            }
-            field.set(boundSql, tenantsSql);
-        } catch (JSQLParserException e) {
-            // 解析失败，忽略并执行原始SQL
-            //log.info("多租户信息处理失败，执行原sql", e);=
-        }
-        // 将处理过的SQL语句设置到参数中，代理完成
-        if (SqlCommandType.SELECT.equals(sqlCommandType)) {
-            return executor.query(ms, parameter, (RowBounds) args[2], (ResultHandler<?>) args[3], cacheKey, boundSql);
-        } else {
-            return executor.update(ms, parameter);
-        }
-    }
-
-    /**
-     * 返回表或子查询的名称。
-     * 如果 fromItem 是子查询，它将检查别名。如果可用，它将返回别名。
-     * 否则，它将返回 fromItem 的字符串表示形式。
-     * 如果 fromItem 是一个表，则返回表的名称。
-     *
-     * @param fromItem 表示表或子查询的 FromItem 对象
-     * @return 表或子查询的名称
-     */
-    private String getTableOrSubQueryName(FromItem fromItem) {
-        if (fromItem instanceof SubSelect) {
-            Alias alias = fromItem.getAlias();
-            if (alias != null && alias.getName() != null) {
-                return alias.getName();
+                // 改写后的sql与租户相关，缓存key需要使用改写后的BoundSql生成，否则不同租户会命中同一份一级/二级缓存
+                CacheKey cacheKey = tenantId == null ? this.getCacheKey(args, executor)
+                        : executor.createCacheKey(ms, parameter, (RowBounds) args[2], boundSql);
+                result = executor.query(ms, parameter, (RowBounds) args[2], (ResultHandler<?>) args[3], cacheKey, boundSql);
             } else {
-                return fromItem.toString();
+                // update方法会重新从MappedStatement获取BoundSql，因此需要使用返回改写后BoundSql的MappedStatement
+                result = executor.update(tenantId == null ? ms : this.updateMappedStatementBuilder(ms, boundSql), parameter);
+            }
+            failed = false;
+            return result;
+        } finally {
+            if (permits != null) {
+                admissionController.release(permits);
+            }
+            if (tenantTelemetry != null) {
+                tenantTelemetry.record(tenantId, ms.getId(), System.nanoTime() - start, failed);
             }
-        } else if (fromItem instanceof Table) {
-            return ((Table) fromItem).getName();
-        } else {
-            return fromItem.toString();
         }
     }
 
-    private String getAliasName(FromItem fromItem) {
-        return fromItem.getAlias() != null ? fromItem.getAlias().getName() : null;
-    }
-
     /**
-     * 将租户条件添加到查询中。
-     * 遍历查询的SelectBody，递归处理PlainSelect和SetOperationList。
-     * 对于PlainSelect，检查fromItem是否是子查询或表，获取表或子查询的名称，
-     * 如果表或子查询与配置的目标表匹配，则添加租户条件到where子句中，或者根据别名添加租户条件。
-     * 对于Join，获取右表的名称，如果右表与配置的目标表匹配，则添加租户条件到on子句中。
-     * 对于SetOperationList，递归处理其中的每个SelectBody。
-     * 输出处理后的selectBody。
+     * 复制 MappedStatement，复制后的 MappedStatement 总是返回给定的 BoundSql。
+     * 直接返回原 BoundSql 而不是重新生成，以保留 foreach 等动态sql生成的附加参数。
      *
-     * @param selectBody 查询的SelectBody对象
-     * @param tenantId   租户ID
+     * @param ms       原 MappedStatement
+     * @param boundSql 改写后的 BoundSql
+     * @return 复制后的 MappedStatement
      */
-    private void handleSelectStmt(SelectBody selectBody, long tenantId) {
-        // 如果SQL查询语句是纯的Select语句，无Union或其他set操作
-        if (selectBody instanceof PlainSelect) {
-            PlainSelect plainSelect = (PlainSelect) selectBody;
-            FromItem fromItem = plainSelect.getFromItem();
-            String fromTableName = getTableOrSubQueryName(fromItem);
-            String fromAliasName = getAliasName(fromItem);
-
-            // 如果from部分是子查询，给子查询添加租户ID
-            if (fromItem instanceof SubSelect) {
-                SubSelect subSelect = (SubSelect) fromItem;
-                SelectBody subSelectBody = subSelect.getSelectBody();
-                handleSelectStmt(subSelectBody, tenantId);
-            }
-
-            // 处理每个join
-            List<Join> joins = plainSelect.getJoins();
-            LongValue tenantIdLV = new LongValue(tenantId);
-            if (joins != null) {
-                for (Join join : joins) {
-                    fromItem = join.getRightItem();
-                    // //如果join的右边部分是子查询，给子查询添加租户ID
-                    //  如 select from xx join (select .. from ) 时，该回调逻辑提供对join子查询解析的功能。
-                    if (fromItem instanceof SubSelect) {
-                        SubSelect subSelect = (SubSelect) fromItem;
-                        SelectBody subSelectBody = subSelect.getSelectBody();
-                        handleSelectStmt(subSelectBody, tenantId);
-                    }
-
-                    //如果join的右边部分和指定的租户表相同，给这部分语句添加租户ID
-                    String joinedTableName = getTableOrSubQueryName(fromItem);
-                    if (!tenantProperties.getTargetTables().contains(joinedTableName)) {
-                        continue;
-                    }
-                    if (getAliasName(fromItem) != null) {
-                        joinedTableName = getAliasName(fromItem);
-                    }
-                    // 在on部分添加租户ID，如果on部分为空，初始化on部分；否则在现有的基础上添加租户ID
-                    Collection<Expression> onExpressions = join.getOnExpressions();
-                    Expression newCondition = new EqualsTo(new Column(joinedTableName + "." + tenantProperties.getTargetColumns().get(0)), tenantIdLV);
-                    // 如果onExpressions为空，添加ON条件 、 否则是AND
-                    if (onExpressions == null || onExpressions.isEmpty()) {
-                        Expression onCondition = new EqualsTo(new Column(joinedTableName + "." + tenantProperties.getTargetColumns().get(0)), tenantIdLV);
-                        join.setOnExpressions(Collections.singleton(onCondition));
-                    } else { // 否则，添加AND条件
-                        AndExpression newExpression = new AndExpression(join.getOnExpression(), newCondition);
-                        join.setOnExpressions(Collections.singleton(newExpression));
-                    }
-                    if (fromItem instanceof SubSelect) {
-                        handleSelectStmt(((SubSelect) fromItem).getSelectBody(), tenantId);
-                    }
-                }
-            }
-            // from部分添加租户id
-            if (tenantProperties.getTargetTables().contains(fromTableName)) {
-                Expression where = plainSelect.getWhere();
-                String fromName = fromAliasName == null ? fromTableName : fromAliasName;
-                if (where != null) {
-                    AndExpression newWhere = new AndExpression(where, new EqualsTo(new Column(fromName + "." + tenantProperties.getTargetColumns().get(0)), tenantIdLV));
-                    plainSelect.setWhere(newWhere);
-                } else {
-                    plainSelect.setWhere(new EqualsTo(new Column(fromName + "." + tenantProperties.getTargetColumns().get(0)), tenantIdLV));
-                }
-            }
-            // 如果SQL查询语句不仅仅是纯的Select语句，包含Union或其他set操作，就把操作的每部分单独处理
-        } else if (selectBody instanceof SetOperationList) {
-            List<SelectBody> selectBodies = ((SetOperationList) selectBody).getSelects();
-            for (SelectBody body : selectBodies) {
-                handleSelectStmt(body, tenantId);
-            }
-        }
-    }
-
-
-    public void handleInsertStmt(Statement stmt) {
-        if (stmt instanceof Insert) {
-            Insert insertStatement = (Insert) stmt;
-            if (!tenantProperties.getTargetTables().contains(insertStatement.getTable().getFullyQualifiedName())) {
-                return;
-            }
-            // Insert的待添加字段和取值列表
-            ItemsList itemsList = insertStatement.getItemsList();
-            List<Column> columnList = insertStatement.getColumns();
-
-            // 对于普通的INSERT语句
-            if (itemsList instanceof ExpressionList) {
-                ExpressionList expressionList = (ExpressionList) itemsList;
-
-                // 在最后添加字段
-                columnList.add(new Column(tenantProperties.getTargetColumns().get(0)));
-
-                // 在对应的取值列表中添加值
-                expressionList.getExpressions().add(new LongValue(this.getTenantConfig().tenantUserImplement.doGetTenantUserIdentity()));
-            }
-
-            // 对于 INSERT SELECT 语句
-            else if (itemsList instanceof SubSelect) {
-                SubSelect subSelect = (SubSelect) itemsList;
-                SelectBody selectBody = subSelect.getSelectBody();
-                // 如果子查询是 PlainSelect
-                if (selectBody instanceof PlainSelect) {
-                    PlainSelect plainSelect = (PlainSelect) selectBody;
-
-                    SelectExpressionItem selectItem = new SelectExpressionItem();
-                    selectItem.setExpression(new LongValue(this.getTenantConfig().tenantUserImplement.doGetTenantUserIdentity()));
-                    selectItem.setAlias(new Alias(tenantProperties.getTargetColumns().get(0) + "_ALIAS_TEMP"));
-
-                    // 在select子句中添加新的select项
-                    plainSelect.getSelectItems().add(selectItem);
-                }
-            }
-        }
-        System.out.println(stmt.toString());
-    }
-
-
-    private MappedStatement updateMappedStatementBuilder(MappedStatement ms, String modifiedSql, BoundSql boundSql) {
-        SqlSource sqlSource = new StaticSqlSource(ms.getConfiguration(), modifiedSql, boundSql.getParameterMappings());
+    private MappedStatement updateMappedStatementBuilder(MappedStatement ms, BoundSql boundSql) {
+        SqlSource sqlSource = parameterObject -> boundSql;
 
         // 创建新的 MappedStatement
         MappedStatement.Builder msBuilder = new MappedStatement.Builder(ms.getConfiguration(), ms.getId(), sqlSource, ms.getSqlCommandType());
@@ -325,11 +217,22 @@ public class TenantSqlInterceptor implements Interceptor {
         msBuilder.fetchSize(ms.getFetchSize());
         msBuilder.statementType(ms.getStatementType());
         msBuilder.keyGenerator(ms.getKeyGenerator());
+        if (ms.getKeyProperties() != null) {
+            msBuilder.keyProperty(String.join(",", ms.getKeyProperties()));
+        }
+        if (ms.getKeyColumns() != null) {
+            msBuilder.keyColumn(String.join(",", ms.getKeyColumns()));
+        }
+        msBuilder.databaseId(ms.getDatabaseId());
+        msBuilder.lang(ms.getLang());
 
         msBuilder.timeout(ms.getTimeout());
         msBuilder.parameterMap(ms.getParameterMap());
         msBuilder.resultMaps(ms.getResultMaps());
+        msBuilder.resultSetType(ms.getResultSetType());
         msBuilder.cache(ms.getCache());
+        msBuilder.flushCacheRequired(ms.isFlushCacheRequired());
+        msBuilder.useCache(ms.isUseCache());
 
         return msBuilder.build();
     }
@@ -348,18 +251,22 @@ public class TenantSqlInterceptor implements Interceptor {
 
     /**
      * 获取租户配置对象。
-     * 如果租户配置对象为null，则使用懒加载方式加载租户配置实例。
+     * 如果租户配置对象为null，则使用懒加载方式加载租户配置实例；插件缓存重建后，切换为新的实例。
      *
      * @return 租户配置对象
      */
     private PluginCache getTenantConfig() {
-        if (tenantProperties == null || pluginCache == null) {
-            PluginCache inst = PluginCache.getInst();
-            this.pluginCache = inst;
+        PluginCache inst = PluginCache.getInst();
+        if (inst != pluginCache) {
             if (inst != null) {
                 this.tenantProperties = inst.getTenantProperties();
             }
+            this.pluginCache = inst;
         }
         return pluginCache;
     }
+
+    public void setTenantPluginInitializer(TenantPluginInitializer tenantPluginInitializer) {
+        this.tenantPluginInitializer = tenantPluginInitializer;
+    }
 }
@@ -0,0 +1,309 @@
+package com.github.tenants.plugin.core.rewrite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 缩略后的超长sql。
+ * <p>
+ * foreach 生成的超长 IN 列表与多行 VALUES 占据了超长sql的绝大部分，但与租户改写无关。
+ * 缩略时只做一次词法扫描：IN 列表的内容替换为标记，多行 VALUES 只保留第一行，其余行替换为一个标记行，
+ * 得到的骨架sql通常只有几百个字符，解析与改写骨架sql后，再将原始内容拼接回改写结果中。
+ * 对于多行 VALUES，骨架中标记行被追加的租户值会同样追加到每一个被省略的行上。
+ *
+ * @author xierh
+ * @since 2026/10/19 19:10
+ */
+final class AbbreviatedSql {
+
+    private static final String IN_LIST_MARKER = "__tenant_elided_in_";
+
+    private static final String ROWS_MARKER = "__tenant_elided_rows__";
+
+    /**
+     * 内容长度超过该值的 IN 列表才会被缩略
+     */
+    private static final int MIN_IN_LIST_LENGTH = 64;
+
+    private final String sql;
+
+    private final String skeleton;
+
+    private final List<String> inLists;
+
+    /**
+     * 被省略的行在原始sql中的起止位置，分别为左括号与右括号的下标
+     */
+    private final int[] rowStarts;
+
+    private final int[] rowEnds;
+
+    private AbbreviatedSql(String sql, String skeleton, List<String> inLists, int[] rowStarts, int[] rowEnds) {
+        this.sql = sql;
+        this.skeleton = skeleton;
+        this.inLists = inLists;
+        this.rowStarts = rowStarts;
+        this.rowEnds = rowEnds;
+    }
+
+    /**
+     * 缩略超长sql。
+     *
+     * @param sql 原始sql
+     * @return 缩略后的sql，没有可以缩略的部分时返回null
+     */
+    static AbbreviatedSql abbreviate(String sql) {
+        int n = sql.length();
+        StringBuilder skeleton = new StringBuilder(512);
+        List<String> inLists = new ArrayList<>();
+        int[] rowStarts = null;
+        int[] rowEnds = null;
+        int rowCount = 0;
+        int copied = 0;
+        int i = 0;
+        while (i < n) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"' || c == '`') {
+                i = skipQuoted(sql, i);
+                continue;
+            }
+            if (!Character.isLetter(c) || (i > 0 && isWordPart(sql.charAt(i - 1)))) {
+                i++;
+                continue;
+            }
+            int end = i;
+            while (end < n && isWordPart(sql.charAt(end))) {
+                end++;
+            }
+            if (end - i == 2 && sql.regionMatches(true, i, "in", 0, 2)) {
+                int open = skipWhitespace(sql, end);
+                int close = open < n && sql.charAt(open) == '(' ? findSimpleListEnd(sql, open) : -1;
+                if (close - open > MIN_IN_LIST_LENGTH) {
+                    skeleton.append(sql, copied, open + 1).append(IN_LIST_MARKER).append(inLists.size()).append("__");
+                    inLists.add(sql.substring(open + 1, close));
+                    copied = close;
+                    i = close;
+                    continue;
+                }
+            } else if (end - i == 6 && rowStarts == null && sql.regionMatches(true, i, "values", 0, 6)) {
+                int open = skipWhitespace(sql, end);
+                int close = open < n && sql.charAt(open) == '(' ? findClose(sql, open) : -1;
+                if (close > 0) {
+                    // 收集第一行之后的所有行
+                    int[] starts = new int[16];
+                    int[] ends = new int[16];
+                    int comma = skipWhitespace(sql, close + 1);
+                    while (comma < n && sql.charAt(comma) == ',') {
+                        int rowOpen = skipWhitespace(sql, comma + 1);
+                        int rowClose = rowOpen < n && sql.charAt(rowOpen) == '(' ? findClose(sql, rowOpen) : -1;
+                        if (rowClose < 0) {
+                            break;
+                        }
+                        if (rowCount == starts.length) {
+                            starts = Arrays.copyOf(starts, rowCount * 2);
+                            ends = Arrays.copyOf(ends, rowCount * 2);
+                        }
+                        starts[rowCount] = rowOpen;
+                        ends[rowCount] = rowClose;
+                        rowCount++;
+                        comma = skipWhitespace(sql, rowClose + 1);
+                    }
+                    if (rowCount > 0) {
+                        rowStarts = starts;
+                        rowEnds = ends;
+                        // 标记行与第一行的取值个数相同，否则无法通过解析
+                        skeleton.append(sql, copied, close + 1).append(", (").append(ROWS_MARKER);
+                        for (int column = countTopLevelCommas(sql, open, close); column > 0; column--) {
+                            skeleton.append(", ").append(ROWS_MARKER);
+                        }
+                        skeleton.append(')');
+                        copied = ends[rowCount - 1] + 1;
+                        i = copied;
+                        continue;
+                    }
+                }
+            }
+            i = end;
+        }
+        if (inLists.isEmpty() && rowCount == 0) {
+            return null;
+        }
+        skeleton.append(sql, copied, n);
+        return new AbbreviatedSql(sql, skeleton.toString(), inLists,
+                rowCount == 0 ? new int[0] : Arrays.copyOf(rowStarts, rowCount),
+                rowCount == 0 ? new int[0] : Arrays.copyOf(rowEnds, rowCount));
+    }
+
+    /**
+     * 将骨架sql的编译结果还原为原始sql的编译结果。
+     *
+     * @param compiledSkeleton 骨架sql的编译结果
+     * @return 原始sql的编译结果
+     */
+    CompiledSql expand(CompiledSql compiledSkeleton) {
+        if (!compiledSkeleton.isTenantAware()) {
+            return CompiledSql.unchanged(sql);
+        }
+        String rewritten = String.join(CompiledSql.TENANT_PLACEHOLDER, compiledSkeleton.getFragments());
+        StringBuilder builder = new StringBuilder(sql.length() + rowStarts.length * 32);
+        int copied = 0;
+        int rowsMarker = rowStarts.length == 0 ? -1 : rewritten.indexOf(ROWS_MARKER);
+        int inMarker = rewritten.indexOf(IN_LIST_MARKER);
+        while (inMarker >= 0 || rowsMarker >= 0) {
+            if (rowsMarker < 0 || (inMarker >= 0 && inMarker < rowsMarker)) {
+                int indexEnd = rewritten.indexOf("__", inMarker + IN_LIST_MARKER.length());
+                int index = Integer.parseInt(rewritten.substring(inMarker + IN_LIST_MARKER.length(), indexEnd));
+                builder.append(rewritten, copied, inMarker).append(inLists.get(index));
+                copied = indexEnd + 2;
+                inMarker = rewritten.indexOf(IN_LIST_MARKER, copied);
+            } else {
+                // 标记行中最后一个标记之后的内容即为改写时追加到每一行的内容
+                int rowOpen = rewritten.lastIndexOf('(', rowsMarker);
+                int rowClose = rewritten.indexOf(')', rowsMarker);
+                int lastMarker = rewritten.lastIndexOf(ROWS_MARKER, rowClose);
+                String appended = rewritten.substring(lastMarker + ROWS_MARKER.length(), rowClose);
+                builder.append(rewritten, copied, rowOpen);
+                for (int row = 0; row < rowStarts.length; row++) {
+                    if (row > 0) {
+                        builder.append(", ");
+                    }
+                    builder.append(sql, rowStarts[row], rowEnds[row]).append(appended).append(')');
+                }
+                copied = rowClose + 1;
+                rowsMarker = -1;
+                if (inMarker >= 0 && inMarker < copied) {
+                    inMarker = rewritten.indexOf(IN_LIST_MARKER, copied);
+                }
+            }
+        }
+        builder.append(rewritten, copied, rewritten.length());
+        return CompiledSql.of(sql, builder.toString());
+    }
+
+    String getSkeleton() {
+        return skeleton;
+    }
+
+    private static boolean isWordPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    private static int skipWhitespace(String sql, int i) {
+        while (i < sql.length() && Character.isWhitespace(sql.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * 跳过以引号包裹的字符串或标识符，支持重复引号与反斜杠转义。
+     *
+     * @param sql   sql
+     * @param start 起始引号的下标
+     * @return 结束引号之后的下标
+     */
+    private static int skipQuoted(String sql, int start) {
+        char quote = sql.charAt(start);
+        int i = start + 1;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (c == '\\' && quote != '`') {
+                i += 2;
+            } else if (c == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * 查找与左括号匹配的右括号。
+     *
+     * @param sql  sql
+     * @param open 左括号的下标
+     * @return 右括号的下标，未找到时返回-1
+     */
+    private static int findClose(String sql, int open) {
+        int depth = 0;
+        int i = open;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"' || c == '`') {
+                i = skipQuoted(sql, i);
+                continue;
+            }
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * 统计括号内顶层（不在引号与嵌套括号中）的逗号个数。
+     *
+     * @param sql   sql
+     * @param open  左括号的下标
+     * @param close 右括号的下标
+     * @return 逗号个数
+     */
+    private static int countTopLevelCommas(String sql, int open, int close) {
+        int count = 0;
+        int i = open + 1;
+        while (i < close) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"' || c == '`') {
+                i = skipQuoted(sql, i);
+                continue;
+            }
+            if (c == '(') {
+                i = findClose(sql, i) + 1;
+                continue;
+            }
+            if (c == ',') {
+                count++;
+            }
+            i++;
+        }
+        return count;
+    }
+
+    /**
+     * 查找简单列表（不含子查询与括号的常量、参数列表）的右括号。
+     *
+     * @param sql  sql
+     * @param open 左括号的下标
+     * @return 右括号的下标，不是简单列表时返回-1
+     */
+    private static int findSimpleListEnd(String sql, int open) {
+        int first = skipWhitespace(sql, open + 1);
+        if (sql.regionMatches(true, first, "select", 0, 6) || sql.regionMatches(true, first, "with", 0, 4)) {
+            return -1;
+        }
+        int i = open + 1;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"' || c == '`') {
+                i = skipQuoted(sql, i);
+                continue;
+            }
+            if (c == '(') {
+                return -1;
+            } else if (c == ')') {
+                return i;
+            }
+            i++;
+        }
+        return -1;
+    }
+}
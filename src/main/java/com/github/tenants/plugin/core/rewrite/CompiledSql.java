@@ -0,0 +1,110 @@
+package com.github.tenants.plugin.core.rewrite;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 预编译的多租户sql。
+ * <p>
+ * 原始sql只会被解析一次，租户标识在改写时以占位符的形式写入，改写结果按占位符切分为若干片段保存。
+ * 执行时只需要将当前租户标识拼接到片段之间即可得到最终sql，不再需要解析与改写。
+ * 不涉及多租户表的sql只有一个片段，即原始sql。
+ *
+ * @author xierh
+ * @since 2026/10/19 14:05
+ */
+public final class CompiledSql {
+
+    /**
+     * 改写时租户标识所使用的占位符，包含控制字符，不会与合法sql中的标识符冲突。
+     */
+    static final String TENANT_PLACEHOLDER = "\u0001tenant\u0001";
+
+    private final String sql;
+
+    private final String[] fragments;
+
+    /**
+     * 使用原始sql与改写后的片段构造一个 CompiledSql 对象。
+     *
+     * @param sql       原始sql
+     * @param fragments 以租户标识切分的改写结果
+     */
+    public CompiledSql(String sql, String[] fragments) {
+        this.sql = sql;
+        this.fragments = fragments;
+    }
+
+    /**
+     * 创建一个无需改写的 CompiledSql 对象。
+     *
+     * @param sql 原始sql
+     * @return 只包含原始sql的 CompiledSql 对象
+     */
+    public static CompiledSql unchanged(String sql) {
+        return new CompiledSql(sql, new String[]{sql});
+    }
+
+    /**
+     * 将包含租户占位符的改写结果切分为片段。
+     *
+     * @param sql       原始sql
+     * @param rewritten 包含租户占位符的改写结果
+     * @return CompiledSql 对象，改写结果不含占位符时视为无需改写
+     */
+    static CompiledSql of(String sql, String rewritten) {
+        int index = rewritten.indexOf(TENANT_PLACEHOLDER);
+        if (index < 0) {
+            return unchanged(sql);
+        }
+        List<String> fragments = new ArrayList<>();
+        int start = 0;
+        while (index >= 0) {
+            fragments.add(rewritten.substring(start, index));
+            start = index + TENANT_PLACEHOLDER.length();
+            index = rewritten.indexOf(TENANT_PLACEHOLDER, start);
+        }
+        fragments.add(rewritten.substring(start));
+        return new CompiledSql(sql, fragments.toArray(new String[0]));
+    }
+
+    /**
+     * 是否需要租户标识，即原始sql是否涉及多租户表。
+     *
+     * @return 需要租户标识则为true
+     */
+    public boolean isTenantAware() {
+        return fragments.length > 1;
+    }
+
+    /**
+     * 使用租户标识生成最终执行的sql。
+     *
+     * @param tenantId 租户标识
+     * @return 最终执行的sql
+     */
+    public String render(long tenantId) {
+        if (fragments.length == 1) {
+            return fragments[0];
+        }
+        String tenant = Long.toString(tenantId);
+        int length = tenant.length() * (fragments.length - 1);
+        for (String fragment : fragments) {
+            length += fragment.length();
+        }
+        StringBuilder builder = new StringBuilder(length);
+        builder.append(fragments[0]);
+        for (int i = 1; i < fragments.length; i++) {
+            builder.append(tenant).append(fragments[i]);
+        }
+        return builder.toString();
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public String[] getFragments() {
+        return fragments;
+    }
+}
@@ -0,0 +1,179 @@
+package com.github.tenants.plugin.core.rewrite;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 基于正则的简易租户注入，作为 JSQLParser 解析失败时的兜底处理。
+ * <p>
+ * 只处理结构最简单的两类语句：不含子查询、JOIN、UNION 的单表查询，以及单行的 INSERT ... VALUES。
+ * 与解析成功时一致，UPDATE 与 DELETE 不添加租户条件。
+ * 其余语句只要引用了多租户表（或配置了表名改写规则的表）就无法保证隔离，返回null由调用方拒绝执行；
+ * 未引用多租户表的语句原样执行。
+ *
+ * @author xierh
+ * @since 2026/10/19 17:30
+ */
+public class RegexTenantInjector {
+
+    private static final Pattern WORD = Pattern.compile("[A-Za-z0-9_$]+");
+
+    private static final Pattern COMPLEX = Pattern.compile("\\b(join|union|intersect|except)\\b|\\(\\s*select\\b|\\bfrom\\b[^;]*\\bfrom\\b",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private static final Pattern UPDATE_OR_DELETE = Pattern.compile("\\s*(update|delete)\\b", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern SIMPLE_SELECT = Pattern.compile(
+            "^(\\s*select\\s.+?\\sfrom\\s+)([`\"]?)(\\w+)\\2(?:\\s+(?:as\\s+)?(?!(?:where|group|order|limit|for)\\b)(\\w+))?" +
+                    "(?:\\s+where\\s+(.+?))?((?:\\s+(?:group\\s+by|order\\s+by|limit|for\\s+update)\\b.*)?)\\s*$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    /**
+     * 单行插入到 VALUES 后的左括号为止，行的结束位置由 {@link #rowEnd(String, int)} 确定
+     */
+    private static final Pattern SINGLE_ROW_INSERT = Pattern.compile(
+            "^(\\s*insert\\s+into\\s+)([`\"]?)(\\w+)\\2\\s*\\(([^()]*)\\)\\s*values\\s*\\(",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private final Set<String> targetTables;
+
+    private final Set<String> rewriteTables;
+
+    private final String targetColumn;
+
+    /**
+     * 使用给定的参数构造一个 RegexTenantInjector 对象。
+     *
+     * @param targetTables  多租户表
+     * @param rewriteTables 配置了表名改写规则的表，兜底处理不支持表名改写
+     * @param targetColumn  多租户字段
+     */
+    public RegexTenantInjector(Collection<String> targetTables, Collection<String> rewriteTables, String targetColumn) {
+        this.targetTables = toLowerCase(targetTables);
+        this.rewriteTables = toLowerCase(rewriteTables);
+        this.targetColumn = targetColumn;
+    }
+
+    /**
+     * 为sql注入租户条件。
+     *
+     * @param sql 原始sql
+     * @return 编译后的sql，无法保证隔离时返回null
+     */
+    public CompiledSql inject(String sql) {
+        boolean referRewriteTable = false;
+        boolean referTargetTable = false;
+        Matcher words = WORD.matcher(sql);
+        while (words.find()) {
+            String word = words.group().toLowerCase();
+            referRewriteTable |= rewriteTables.contains(word);
+            referTargetTable |= targetTables.contains(word);
+        }
+        if (referRewriteTable) {
+            return null;
+        }
+        if (!referTargetTable || UPDATE_OR_DELETE.matcher(sql).lookingAt()) {
+            // 与解析成功时一致，UPDATE 与 DELETE 只改写表名，不添加租户条件
+            return CompiledSql.unchanged(sql);
+        }
+        if (COMPLEX.matcher(sql).find()) {
+            return null;
+        }
+        Matcher select = SIMPLE_SELECT.matcher(sql);
+        if (select.matches()) {
+            return this.injectSelect(sql, select);
+        }
+        Matcher insert = SINGLE_ROW_INSERT.matcher(sql);
+        if (insert.lookingAt()) {
+            int end = rowEnd(sql, insert.end());
+            // 行之后还有其他内容时（多行 VALUES、ON DUPLICATE KEY UPDATE 等）无法保证注入位置正确
+            if (end > 0 && sql.substring(end + 1).trim().isEmpty()) {
+                return this.injectInsert(sql, insert, sql.substring(insert.end(), end));
+            }
+        }
+        return null;
+    }
+
+    private CompiledSql injectSelect(String sql, Matcher select) {
+        String table = select.group(3);
+        if (!targetTables.contains(table.toLowerCase())) {
+            return CompiledSql.unchanged(sql);
+        }
+        String alias = select.group(4) == null ? table : select.group(4);
+        String where = select.group(5);
+        // 表名（含引号）或别名之后即为注入条件的位置
+        int end = select.group(4) != null ? select.end(4) : select.end(3) + select.group(2).length();
+        StringBuilder prefix = new StringBuilder(sql.length() + 32).append(sql, 0, end).append(" WHERE ");
+        if (where != null) {
+            prefix.append('(').append(where).append(") AND ");
+        }
+        prefix.append(alias).append('.').append(targetColumn).append(" = ");
+        return new CompiledSql(sql, new String[]{prefix.toString(), select.group(6)});
+    }
+
+    private CompiledSql injectInsert(String sql, Matcher insert, String row) {
+        if (!targetTables.contains(insert.group(3).toLowerCase())) {
+            return CompiledSql.unchanged(sql);
+        }
+        String prefix = insert.group(1) + insert.group(2) + insert.group(3) + insert.group(2)
+                + " (" + insert.group(4) + ", " + targetColumn + ") VALUES (" + row + ", ";
+        return new CompiledSql(sql, new String[]{prefix, ")"});
+    }
+
+    /**
+     * 查找 VALUES 行的右括号，跳过字符串与带引号标识符中的括号。
+     *
+     * @param sql   原始sql
+     * @param start 行的左括号之后的位置
+     * @return 右括号的位置，括号不匹配时返回-1
+     */
+    private static int rowEnd(String sql, int start) {
+        int depth = 0;
+        for (int i = start; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"' || c == '`') {
+                i = quoteEnd(sql, i, c);
+                if (i < 0) {
+                    return -1;
+                }
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                if (depth == 0) {
+                    return i;
+                }
+                depth--;
+            }
+        }
+        return -1;
+    }
+
+    private static int quoteEnd(String sql, int start, char quote) {
+        for (int i = start + 1; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '\\' && quote != '`') {
+                i++;
+            } else if (c == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i++;
+                } else {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static Set<String> toLowerCase(Collection<String> values) {
+        Set<String> result = new HashSet<>();
+        if (values != null) {
+            for (String value : values) {
+                result.add(value.toLowerCase());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,136 @@
+package com.github.tenants.plugin.core.rewrite;
+
+import com.github.tenants.plugin.TenantProperties;
+import com.github.tenants.plugin.cache.SqlRewriteCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.*;
+
+/**
+ * 编译期生成的改写索引，记录注解mapper中静态sql的编译结果。
+ * <p>
+ * 索引由 {@link com.github.tenants.plugin.processor.TenantRewriteProcessor} 在编译期生成，
+ * 插件初始化时载入到 {@link SqlRewriteCache} 中，这些sql在运行时不再需要解析。
+ * 索引记录了生成时使用的多租户表与多租户字段，与运行时的配置不一致，或配置了表名改写规则时不载入。
+ * 改写器按表名区分大小写匹配多租户表，因此表名与字段名同样区分大小写比较，否则生成时未匹配的sql会在运行时跳过隔离。
+ * 只载入带有租户条件的编译结果，其余sql仍在运行时解析，由运行时的改写器判断是否需要隔离。
+ *
+ * @author xierh
+ * @since 2026/10/19 21:10
+ */
+public final class TenantRewriteIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(TenantRewriteIndex.class);
+
+    /**
+     * 索引在类路径中的位置，每个模块生成各自的索引
+     */
+    public static final String RESOURCE = "META-INF/mybatis-tenants/rewrite-index.properties";
+
+    private static final String COLUMN = "column";
+
+    private static final String TABLES = "tables";
+
+    private static final String COUNT = "count";
+
+    private TenantRewriteIndex() {
+    }
+
+    /**
+     * 写入改写索引。
+     *
+     * @param out          输出流
+     * @param targetTables 生成时使用的多租户表
+     * @param targetColumn 生成时使用的多租户字段
+     * @param compiledSqls 原始sql与编译结果
+     * @throws IOException 如果写入失败
+     */
+    public static void store(OutputStream out, Collection<String> targetTables, String targetColumn,
+                             Map<String, CompiledSql> compiledSqls) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(COLUMN, targetColumn);
+        properties.setProperty(TABLES, String.join(",", new TreeSet<>(targetTables)));
+        properties.setProperty(COUNT, Integer.toString(compiledSqls.size()));
+        int index = 0;
+        for (Map.Entry<String, CompiledSql> entry : compiledSqls.entrySet()) {
+            properties.setProperty("sql." + index, entry.getKey());
+            properties.setProperty("rewritten." + index, String.join(CompiledSql.TENANT_PLACEHOLDER, entry.getValue().getFragments()));
+            index++;
+        }
+        properties.store(out, "generated by mybatis-tenants-plugin, do not edit");
+    }
+
+    /**
+     * 从类路径中载入所有与当前配置一致的改写索引，只载入带有租户条件的编译结果。
+     *
+     * @param classLoader      类加载器
+     * @param tenantProperties 多租户配置，多租户表需已载入
+     * @param sqlRewriteCache  编译结果的缓存
+     * @return 载入的编译结果数量
+     */
+    public static int load(ClassLoader classLoader, TenantProperties tenantProperties, SqlRewriteCache sqlRewriteCache) {
+        Enumeration<URL> resources;
+        try {
+            resources = classLoader.getResources(RESOURCE);
+        } catch (IOException e) {
+            log.warn("failed to find tenant rewrite index: {}", e.toString());
+            return 0;
+        }
+        int loaded = 0;
+        while (resources.hasMoreElements()) {
+            URL url = resources.nextElement();
+            Properties properties = new Properties();
+            try (InputStream in = url.openStream()) {
+                properties.load(in);
+            } catch (IOException e) {
+                log.warn("failed to load tenant rewrite index {}: {}", url, e.toString());
+                continue;
+            }
+            if (!matches(properties, tenantProperties)) {
+                log.warn("ignored tenant rewrite index {}, it was generated with column {} and tables [{}], which differ from the runtime configuration",
+                        url, properties.getProperty(COLUMN), properties.getProperty(TABLES, ""));
+                continue;
+            }
+            int count = Integer.parseInt(properties.getProperty(COUNT, "0"));
+            for (int i = 0; i < count; i++) {
+                String sql = properties.getProperty("sql." + i);
+                String rewritten = properties.getProperty("rewritten." + i);
+                if (sql == null || rewritten == null) {
+                    continue;
+                }
+                CompiledSql compiledSql = CompiledSql.of(sql, rewritten);
+                if (compiledSql.isTenantAware()) {
+                    sqlRewriteCache.put(sql, compiledSql);
+                    loaded++;
+                }
+            }
+        }
+        return loaded;
+    }
+
+    private static boolean matches(Properties properties, TenantProperties tenantProperties) {
+        if (tenantProperties.getTableRewrites() != null && !tenantProperties.getTableRewrites().isEmpty()) {
+            return false;
+        }
+        if (!tenantProperties.getTargetColumns().get(0).equals(properties.getProperty(COLUMN))) {
+            return false;
+        }
+        String value = properties.getProperty(TABLES, "");
+        Set<String> tables = trim(value.isEmpty() ? Collections.emptyList() : Arrays.asList(value.split(",")));
+        List<String> targetTables = tenantProperties.getTargetTables();
+        return tables.equals(trim(targetTables == null ? Collections.emptyList() : targetTables));
+    }
+
+    private static Set<String> trim(Collection<String> values) {
+        Set<String> result = new HashSet<>();
+        for (String value : values) {
+            result.add(value.trim());
+        }
+        return result;
+    }
+}
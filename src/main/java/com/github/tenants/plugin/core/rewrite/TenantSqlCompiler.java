@@ -0,0 +1,262 @@
+package com.github.tenants.plugin.core.rewrite;
+
+import com.github.tenants.plugin.TenantProperties;
+import com.github.tenants.plugin.cache.SqlRewriteCache;
+import com.github.tenants.plugin.ex.TenantException;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.Statement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 多租户sql编译器，负责获取原始sql的编译结果。
+ * <p>
+ * 编译结果优先从 {@link SqlRewriteCache} 中获取，未命中时解析并改写原始sql。
+ * 存在语法错误的sql会记录到负缓存中，之后不会再次尝试解析，直接按照 {@link TenantProperties.ParseFailurePolicy} 处理。
+ * 解析还受长度与耗时的限制，超过限制或解析线程繁忙只是本次执行失败，同样按照失败策略处理，但不会写入负缓存，
+ * 避免一次偶发的超时使合法sql永久失去租户隔离。
+ * <p>
+ * 长度超过 {@link TenantProperties.Parse#getLargeSqlThreshold()} 的sql不直接解析，
+ * 而是先缩略其中的 IN 列表与多行 VALUES，只解析改写缩略后的骨架sql，再拼接回原始内容，
+ * 骨架sql的编译结果会被缓存，超长sql本身则不缓存。
+ *
+ * @author xierh
+ * @since 2026/10/19 17:05
+ */
+public class TenantSqlCompiler {
+
+    private static final Logger log = LoggerFactory.getLogger(TenantSqlCompiler.class);
+
+    private final TenantSqlRewriter tenantSqlRewriter;
+
+    private final RegexTenantInjector regexTenantInjector;
+
+    private final SqlRewriteCache sqlRewriteCache;
+
+    private final TenantProperties.Parse parse;
+
+    /**
+     * sqlId与其最近一次解析的sql，用于排查改写结果。sqlId的数量有限，不会无限增长
+     */
+    private final ConcurrentMap<String, String> statementSqls = new ConcurrentHashMap<>();
+
+    /**
+     * 因解析失败而未做多租户处理直接执行的次数，包括命中负缓存的执行
+     */
+    private final LongAdder passThroughCount = new LongAdder();
+
+    /**
+     * 使用给定的参数构造一个 TenantSqlCompiler 对象。
+     *
+     * @param tenantSqlRewriter   多租户sql改写器
+     * @param regexTenantInjector 解析失败时使用的简易注入
+     * @param sqlRewriteCache     编译结果的缓存
+     * @param parse               sql解析的配置
+     */
+    public TenantSqlCompiler(TenantSqlRewriter tenantSqlRewriter, RegexTenantInjector regexTenantInjector,
+                             SqlRewriteCache sqlRewriteCache, TenantProperties.Parse parse) {
+        this.tenantSqlRewriter = tenantSqlRewriter;
+        this.regexTenantInjector = regexTenantInjector;
+        this.sqlRewriteCache = sqlRewriteCache;
+        this.parse = parse;
+    }
+
+    /**
+     * 获取原始sql的编译结果。
+     *
+     * @param statementId mapper方法对应的sqlId，用于输出日志
+     * @param sql         原始sql
+     * @return 编译结果，解析失败且策略为直接执行时返回原始sql
+     * @throws TenantException 如果解析失败且策略为拒绝执行，或简易注入无法保证隔离
+     */
+    public CompiledSql compile(String statementId, String sql) {
+        if (parse.getLargeSqlThreshold() > 0 && sql.length() > parse.getLargeSqlThreshold()) {
+            AbbreviatedSql abbreviatedSql = AbbreviatedSql.abbreviate(sql);
+            if (abbreviatedSql != null) {
+                return abbreviatedSql.expand(this.compile(statementId, abbreviatedSql.getSkeleton(), true));
+            }
+            // 超长sql几乎不会重复出现，不占用缓存
+            return this.compile(statementId, sql, false);
+        }
+        return this.compile(statementId, sql, true);
+    }
+
+    /**
+     * 获取原始sql的编译结果。
+     *
+     * @param statementId mapper方法对应的sqlId
+     * @param sql         原始sql
+     * @param cacheable   编译结果与解析失败是否写入缓存
+     * @return 编译结果
+     */
+    private CompiledSql compile(String statementId, String sql, boolean cacheable) {
+        CompiledSql compiledSql = sqlRewriteCache.get(sql);
+        if (compiledSql != null) {
+            return compiledSql;
+        }
+        if (cacheable) {
+            statementSqls.put(statementId, sql);
+        }
+        String failure = sqlRewriteCache.getFailure(sql);
+        if (failure == null) {
+            try {
+                compiledSql = tenantSqlRewriter.compile(sql, this.parse(sql));
+                if (cacheable) {
+                    sqlRewriteCache.put(sql, compiledSql);
+                }
+                return compiledSql;
+            } catch (ParseLimitException e) {
+                // 超过限制与sql本身无关，只影响本次执行
+                return this.handleParseFailure(statementId, sql, e.getMessage(), false);
+            } catch (JSQLParserException e) {
+                failure = e.getMessage();
+                if (cacheable) {
+                    sqlRewriteCache.putFailure(sql, failure);
+                }
+            }
+        }
+        return this.handleParseFailure(statementId, sql, failure, cacheable);
+    }
+
+    /**
+     * 按照解析失败策略处理无法解析的sql。
+     *
+     * @param statementId mapper方法对应的sqlId
+     * @param sql         原始sql
+     * @param failure     失败原因
+     * @param cacheable   简易注入的结果是否写入缓存
+     * @return 编译结果
+     */
+    private CompiledSql handleParseFailure(String statementId, String sql, String failure, boolean cacheable) {
+        switch (parse.getFailurePolicy()) {
+            case REJECT:
+                throw new TenantException("failed to parse sql of " + statementId + ", rejected by tenant parse failure policy: " + failure);
+            case REGEX:
+                CompiledSql compiledSql = regexTenantInjector.inject(sql);
+                if (compiledSql == null) {
+                    throw new TenantException("failed to parse sql of " + statementId + " and the regex fallback can not isolate it: " + failure);
+                }
+                // 简易注入的结果同样缓存，之后不再尝试解析
+                if (cacheable) {
+                    sqlRewriteCache.put(sql, compiledSql);
+                }
+                return compiledSql;
+            default:
+                passThroughCount.increment();
+                log.warn("failed to parse sql of {}, executing it without tenant isolation: {}", statementId, failure);
+                return CompiledSql.unchanged(sql);
+        }
+    }
+
+    /**
+     * 在长度与耗时的限制内解析sql。
+     * 超时从解析线程开始解析时计算，在队列中等待解析线程的时间同样以超时时间为上限。
+     *
+     * @param sql 原始sql
+     * @return 解析结果
+     * @throws JSQLParserException 如果sql无法解析
+     * @throws ParseLimitException 如果超过长度、耗时的限制，或解析线程繁忙
+     */
+    private Statement parse(String sql) throws JSQLParserException {
+        if (parse.getMaxSqlLength() > 0 && sql.length() > parse.getMaxSqlLength()) {
+            throw new ParseLimitException("sql length " + sql.length() + " exceeds tenant.parse.max-sql-length " + parse.getMaxSqlLength());
+        }
+        if (parse.getTimeout() <= 0) {
+            return CCJSqlParserUtil.parse(sql);
+        }
+        CountDownLatch started = new CountDownLatch(1);
+        Future<Statement> future;
+        try {
+            future = ParserExecutorHolder.EXECUTOR.submit(() -> {
+                started.countDown();
+                return CCJSqlParserUtil.parse(sql);
+            });
+        } catch (RejectedExecutionException e) {
+            // 不退化为在当前线程解析，否则无法限制解析耗时
+            throw new ParseLimitException("all tenant sql parser threads are busy");
+        }
+        try {
+            if (!started.await(parse.getTimeout(), TimeUnit.MILLISECONDS) && future.cancel(false)) {
+                ParserExecutorHolder.EXECUTOR.remove((Runnable) future);
+                throw new ParseLimitException("sql parsing did not start within " + parse.getTimeout() + "ms, all tenant sql parser threads are busy");
+            }
+            return future.get(parse.getTimeout(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new ParseLimitException("sql parsing timed out after " + parse.getTimeout() + "ms");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof JSQLParserException) {
+                throw (JSQLParserException) e.getCause();
+            }
+            throw new JSQLParserException(e.getCause());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ParseLimitException("interrupted while waiting for sql parsing");
+        }
+    }
+
+    /**
+     * 获取sqlId最近一次解析的sql。缓存命中时不会更新，超长sql记录的是缩略后的骨架sql。
+     *
+     * @param statementId mapper方法对应的sqlId
+     * @return 最近一次解析的sql，未解析过时返回null
+     */
+    public String getStatementSql(String statementId) {
+        return statementSqls.get(statementId);
+    }
+
+    /**
+     * 获取因解析失败而未做多租户处理直接执行的次数。
+     *
+     * @return 直接执行的次数
+     */
+    public long getPassThroughCount() {
+        return passThroughCount.sum();
+    }
+
+    public SqlRewriteCache getSqlRewriteCache() {
+        return sqlRewriteCache;
+    }
+
+    public TenantSqlRewriter getTenantSqlRewriter() {
+        return tenantSqlRewriter;
+    }
+
+    /**
+     * 超过解析的长度、耗时限制，或解析线程繁忙。与sql本身无关，不写入负缓存。
+     */
+    static final class ParseLimitException extends JSQLParserException {
+
+        private static final long serialVersionUID = 1L;
+
+        ParseLimitException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * 限时解析所使用的线程池，所有编译器共用，插件重建时不会重复创建。
+     * JSQLParser 不响应中断，超时的解析会继续占用线程直到结束，因此线程数与队列均有上限，
+     * 占满后新的解析直接按照失败策略处理，不会在调用线程中不受限制地解析。
+     */
+    private static class ParserExecutorHolder {
+
+        private static final ThreadPoolExecutor EXECUTOR = createExecutor();
+
+        private static ThreadPoolExecutor createExecutor() {
+            int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+            AtomicInteger index = new AtomicInteger();
+            return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(threads * 64), runnable -> {
+                Thread thread = new Thread(runnable, "tenant-sql-parser-" + index.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,450 @@
+package com.github.tenants.plugin.core.rewrite;
+
+import com.github.tenants.plugin.TenantProperties;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.Alias;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.ExpressionVisitorAdapter;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
+import net.sf.jsqlparser.expression.operators.relational.ItemsList;
+import net.sf.jsqlparser.expression.operators.relational.MultiExpressionList;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.delete.Delete;
+import net.sf.jsqlparser.statement.insert.Insert;
+import net.sf.jsqlparser.statement.select.*;
+import net.sf.jsqlparser.statement.update.Update;
+
+import java.util.*;
+
+/**
+ * 多租户sql改写器，负责将原始sql编译为 {@link CompiledSql}。
+ * <p>
+ * 改写器根据配置向 SELECT 的 FROM、JOIN 部分添加租户条件，向 INSERT 添加租户字段，
+ * 并将配置了 {@link TenantProperties.TableRewrite} 规则的表改写为租户专属的schema或表名。
+ * 改写时租户标识以占位符写入，因此同一条sql的编译结果对所有租户通用。
+ * <p>
+ * 改写器不保存任何与单次改写相关的状态，可以在多个线程间共享。
+ *
+ * @author xierh
+ * @since 2026/10/19 14:20
+ */
+public class TenantSqlRewriter {
+
+    /**
+     * 改写结果的版本，改写器或正则兜底注入的输出发生变化时必须递增，使按旧规则改写并持久化的结果失效
+     */
+    public static final int REWRITE_VERSION = 2;
+
+    private final Set<String> targetTables;
+
+    private final String targetColumn;
+
+    private final Map<String, TenantProperties.TableRewrite> tableRewrites;
+
+    /**
+     * 使用给定的参数构造一个 TenantSqlRewriter 对象。
+     *
+     * @param targetTables  多租户表
+     * @param targetColumn  多租户字段
+     * @param tableRewrites 按表指定的租户表名改写规则，可以为null
+     */
+    public TenantSqlRewriter(Collection<String> targetTables, String targetColumn,
+                             Map<String, TenantProperties.TableRewrite> tableRewrites) {
+        this.targetTables = targetTables == null ? Collections.emptySet() : new HashSet<>(targetTables);
+        this.targetColumn = targetColumn;
+        this.tableRewrites = tableRewrites == null ? Collections.emptyMap() : new HashMap<>(tableRewrites);
+    }
+
+    /**
+     * 解析并编译原始sql。
+     *
+     * @param sql 原始sql
+     * @return 编译后的sql
+     * @throws JSQLParserException 如果sql无法解析
+     */
+    public CompiledSql compile(String sql) throws JSQLParserException {
+        return this.compile(sql, CCJSqlParserUtil.parse(sql));
+    }
+
+    /**
+     * 编译已解析的sql，解析结果会被改写。
+     *
+     * @param sql  原始sql
+     * @param stmt 原始sql的解析结果
+     * @return 编译后的sql
+     */
+    public CompiledSql compile(String sql, Statement stmt) {
+        if (stmt instanceof Select) {
+            this.handleSelectStmt(((Select) stmt).getSelectBody());
+        } else if (stmt instanceof Insert) {
+            this.handleInsertStmt((Insert) stmt);
+        } else if (stmt instanceof Update) {
+            this.handleUpdateStmt((Update) stmt);
+        } else if (stmt instanceof Delete) {
+            this.handleDeleteStmt((Delete) stmt);
+        }
+        return CompiledSql.of(sql, stmt.toString());
+    }
+
+    /**
+     * 返回表或子查询的名称。
+     * 如果 fromItem 是子查询，它将检查别名。如果可用，它将返回别名。
+     * 否则，它将返回 fromItem 的字符串表示形式。
+     * 如果 fromItem 是一个表，则返回表的名称。
+     *
+     * @param fromItem 表示表或子查询的 FromItem 对象
+     * @return 表或子查询的名称
+     */
+    private String getTableOrSubQueryName(FromItem fromItem) {
+        if (fromItem instanceof SubSelect) {
+            Alias alias = fromItem.getAlias();
+            if (alias != null && alias.getName() != null) {
+                return alias.getName();
+            } else {
+                return fromItem.toString();
+            }
+        } else if (fromItem instanceof Table) {
+            return ((Table) fromItem).getName();
+        } else {
+            return fromItem.toString();
+        }
+    }
+
+    private String getAliasName(FromItem fromItem) {
+        return fromItem.getAlias() != null ? fromItem.getAlias().getName() : null;
+    }
+
+    /**
+     * 判断表是否需要添加租户条件。
+     * 配置了表名改写规则的表，只有规则中指定保留条件时才添加。
+     *
+     * @param tableName 表名
+     * @return 需要添加租户条件则为true
+     */
+    private boolean needsPredicate(String tableName) {
+        if (!targetTables.contains(tableName)) {
+            return false;
+        }
+        TenantProperties.TableRewrite rewrite = tableRewrites.get(tableName);
+        return rewrite == null || rewrite.isPredicate();
+    }
+
+    /**
+     * 按照配置的规则将表改写为租户专属的schema或表名。
+     *
+     * @param fromItem  FROM、JOIN等位置上的表或子查询
+     * @param keepRefer 改写表名时是否以原表名作为别名，保证语句中以原表名限定的字段仍然可用
+     */
+    private void rewriteTable(FromItem fromItem, boolean keepRefer) {
+        if (!(fromItem instanceof Table) || tableRewrites.isEmpty()) {
+            return;
+        }
+        Table table = (Table) fromItem;
+        String tableName = table.getName();
+        TenantProperties.TableRewrite rewrite = tableRewrites.get(tableName);
+        if (rewrite == null) {
+            return;
+        }
+        if (TenantProperties.TableRewriteMode.TABLE.equals(rewrite.getMode())) {
+            if (keepRefer && table.getAlias() == null) {
+                table.setAlias(new Alias(tableName, false));
+            }
+            table.setName(this.resolvePattern(rewrite.getPattern(), "{table}_{tenant}", tableName));
+        } else {
+            table.setSchemaName(this.resolvePattern(rewrite.getPattern(), "tenant_{tenant}", tableName));
+        }
+    }
+
+    private String resolvePattern(String pattern, String defaultPattern, String tableName) {
+        String resolved = pattern == null || pattern.isEmpty() ? defaultPattern : pattern;
+        return resolved.replace("{table}", tableName).replace("{tenant}", CompiledSql.TENANT_PLACEHOLDER);
+    }
+
+    private Expression tenantCondition(String tableName) {
+        return new EqualsTo(new Column(tableName + "." + targetColumn), new TenantIdPlaceholder());
+    }
+
+    /**
+     * 将租户条件添加到查询中。
+     * 遍历查询的SelectBody，递归处理PlainSelect和SetOperationList。
+     * 对于PlainSelect，检查fromItem是否是子查询或表，获取表或子查询的名称，
+     * 如果表或子查询与配置的目标表匹配，则添加租户条件到where子句中，或者根据别名添加租户条件。
+     * 对于Join，获取右表的名称，如果右表与配置的目标表匹配，则添加租户条件到on子句中。
+     * 对于SetOperationList，递归处理其中的每个SelectBody。
+     * 配置了表名改写规则的表，同时会被改写为租户专属的schema或表名。
+     *
+     * @param selectBody 查询的SelectBody对象
+     */
+    private void handleSelectStmt(SelectBody selectBody) {
+        // 如果SQL查询语句是纯的Select语句，无Union或其他set操作
+        if (selectBody instanceof PlainSelect) {
+            PlainSelect plainSelect = (PlainSelect) selectBody;
+            FromItem fromItem = plainSelect.getFromItem();
+            if (fromItem == null) {
+                return;
+            }
+            String fromTableName = getTableOrSubQueryName(fromItem);
+            String fromAliasName = getAliasName(fromItem);
+
+            // 如果from部分是子查询，给子查询添加租户ID
+            if (fromItem instanceof SubSelect) {
+                SubSelect subSelect = (SubSelect) fromItem;
+                SelectBody subSelectBody = subSelect.getSelectBody();
+                handleSelectStmt(subSelectBody);
+            }
+            this.rewriteTable(fromItem, true);
+
+            // 处理每个join
+            List<Join> joins = plainSelect.getJoins();
+            if (joins != null) {
+                for (Join join : joins) {
+                    fromItem = join.getRightItem();
+                    // //如果join的右边部分是子查询，给子查询添加租户ID
+                    //  如 select from xx join (select .. from ) 时，该回调逻辑提供对join子查询解析的功能。
+                    if (fromItem instanceof SubSelect) {
+                        SubSelect subSelect = (SubSelect) fromItem;
+                        SelectBody subSelectBody = subSelect.getSelectBody();
+                        handleSelectStmt(subSelectBody);
+                    }
+
+                    //如果join的右边部分和指定的租户表相同，给这部分语句添加租户ID
+                    String joinedTableName = getTableOrSubQueryName(fromItem);
+                    this.rewriteTable(fromItem, true);
+                    if (!this.needsPredicate(joinedTableName)) {
+                        continue;
+                    }
+                    if (getAliasName(fromItem) != null) {
+                        joinedTableName = getAliasName(fromItem);
+                    }
+                    // 在on部分添加租户ID，如果on部分为空，初始化on部分；否则在现有的基础上添加租户ID
+                    Collection<Expression> onExpressions = join.getOnExpressions();
+                    Expression newCondition = this.tenantCondition(joinedTableName);
+                    // 如果onExpressions为空，添加ON条件 、 否则是AND
+                    if (onExpressions == null || onExpressions.isEmpty()) {
+                        join.setOnExpressions(Collections.singleton(newCondition));
+                    } else { // 否则，添加AND条件
+                        AndExpression newExpression = new AndExpression(join.getOnExpression(), newCondition);
+                        join.setOnExpressions(Collections.singleton(newExpression));
+                    }
+                }
+            }
+            // from部分添加租户id
+            if (this.needsPredicate(fromTableName)) {
+                Expression where = plainSelect.getWhere();
+                String fromName = fromAliasName == null ? fromTableName : fromAliasName;
+                if (where != null) {
+                    plainSelect.setWhere(new AndExpression(where, this.tenantCondition(fromName)));
+                } else {
+                    plainSelect.setWhere(this.tenantCondition(fromName));
+                }
+            }
+            // 如果SQL查询语句不仅仅是纯的Select语句，包含Union或其他set操作，就把操作的每部分单独处理
+        } else if (selectBody instanceof SetOperationList) {
+            List<SelectBody> selectBodies = ((SetOperationList) selectBody).getSelects();
+            for (SelectBody body : selectBodies) {
+                handleSelectStmt(body);
+            }
+        }
+    }
+
+    private void handleInsertStmt(Insert insertStatement) {
+        String tableName = insertStatement.getTable().getFullyQualifiedName();
+        this.rewriteTable(insertStatement.getTable(), false);
+        if (!this.needsPredicate(tableName)) {
+            return;
+        }
+        // Insert的待添加字段和取值列表
+        ItemsList itemsList = insertStatement.getItemsList();
+        List<Column> columnList = insertStatement.getColumns();
+
+        // 对于普通的INSERT语句
+        if (itemsList instanceof ExpressionList) {
+            ExpressionList expressionList = (ExpressionList) itemsList;
+
+            // 在最后添加字段
+            columnList.add(new Column(targetColumn));
+
+            // 在对应的取值列表中添加值
+            expressionList.getExpressions().add(new TenantIdPlaceholder());
+        }
+
+        // 对于多行的 INSERT ... VALUES 语句，在每一行的取值列表中添加值
+        else if (itemsList instanceof MultiExpressionList) {
+            columnList.add(new Column(targetColumn));
+            for (ExpressionList expressionList : ((MultiExpressionList) itemsList).getExpressionLists()) {
+                expressionList.getExpressions().add(new TenantIdPlaceholder());
+            }
+        }
+
+        // 对于 INSERT SELECT 语句
+        else if (itemsList instanceof SubSelect) {
+            SubSelect subSelect = (SubSelect) itemsList;
+            SelectBody selectBody = subSelect.getSelectBody();
+            // 如果子查询是 PlainSelect
+            if (selectBody instanceof PlainSelect) {
+                PlainSelect plainSelect = (PlainSelect) selectBody;
+
+                SelectExpressionItem selectItem = new SelectExpressionItem();
+                selectItem.setExpression(new TenantIdPlaceholder());
+                selectItem.setAlias(new Alias(targetColumn + "_ALIAS_TEMP"));
+
+                // 在select子句中添加新的select项
+                plainSelect.getSelectItems().add(selectItem);
+            }
+        }
+    }
+
+    /**
+     * 改写 UPDATE 语句中的表，包括被更新的表与关联的表。
+     *
+     * @param updateStatement UPDATE 语句
+     */
+    private void handleUpdateStmt(Update updateStatement) {
+        this.rewriteTable(updateStatement.getTable(), true);
+        this.rewriteJoins(updateStatement.getStartJoins());
+        this.rewriteTable(updateStatement.getFromItem(), true);
+        this.rewriteJoins(updateStatement.getJoins());
+    }
+
+    /**
+     * 改写 DELETE 语句中的表，包括被删除的表与关联的表。
+     * 单表删除时不添加别名，低版本的mysql不支持单表 DELETE 使用别名，
+     * 因此被删除的表改写了表名且没有别名时，语句中以原表名限定的字段同样改为以新表名限定。
+     *
+     * @param deleteStatement DELETE 语句
+     */
+    private void handleDeleteStmt(Delete deleteStatement) {
+        Table table = deleteStatement.getTable();
+        String tableName = table.getName();
+        this.rewriteTable(table, false);
+        this.rewriteJoins(deleteStatement.getJoins());
+        if (table.getAlias() != null || tableName.equals(table.getName())) {
+            return;
+        }
+        QualifierRenamer renamer = new QualifierRenamer(tableName, table.getName());
+        renamer.rename(deleteStatement.getWhere());
+        if (deleteStatement.getOrderByElements() != null) {
+            for (OrderByElement orderByElement : deleteStatement.getOrderByElements()) {
+                renamer.rename(orderByElement.getExpression());
+            }
+        }
+        if (deleteStatement.getJoins() != null) {
+            for (Join join : deleteStatement.getJoins()) {
+                renamer.renameAll(join.getOnExpressions());
+            }
+        }
+        if (deleteStatement.getTables() != null) {
+            for (Table deleted : deleteStatement.getTables()) {
+                if (deleted.getSchemaName() == null && tableName.equalsIgnoreCase(deleted.getName())) {
+                    deleted.setName(table.getName());
+                }
+            }
+        }
+    }
+
+    private void rewriteJoins(List<Join> joins) {
+        if (joins == null) {
+            return;
+        }
+        for (Join join : joins) {
+            this.rewriteTable(join.getRightItem(), true);
+        }
+    }
+
+    /**
+     * 将以原表名限定的字段改为以新表名限定，包括相关子查询中引用外层表的字段。
+     * 子查询的 FROM、JOIN 中出现了同名且没有别名的表时，其中的字段引用的是子查询自身的表，不做处理。
+     */
+    private static class QualifierRenamer extends ExpressionVisitorAdapter {
+
+        private final String from;
+
+        private final String to;
+
+        QualifierRenamer(String from, String to) {
+            this.from = from;
+            this.to = to;
+            this.setSelectVisitor(new SelectVisitorAdapter() {
+                @Override
+                public void visit(PlainSelect plainSelect) {
+                    if (shadows(plainSelect.getFromItem())) {
+                        return;
+                    }
+                    if (plainSelect.getJoins() != null) {
+                        for (Join join : plainSelect.getJoins()) {
+                            if (shadows(join.getRightItem())) {
+                                return;
+                            }
+                        }
+                    }
+                    for (SelectItem selectItem : plainSelect.getSelectItems()) {
+                        if (selectItem instanceof SelectExpressionItem) {
+                            rename(((SelectExpressionItem) selectItem).getExpression());
+                        }
+                    }
+                    if (plainSelect.getJoins() != null) {
+                        for (Join join : plainSelect.getJoins()) {
+                            renameAll(join.getOnExpressions());
+                        }
+                    }
+                    rename(plainSelect.getWhere());
+                    rename(plainSelect.getHaving());
+                }
+
+                @Override
+                public void visit(SetOperationList setOperationList) {
+                    for (SelectBody selectBody : setOperationList.getSelects()) {
+                        selectBody.accept(this);
+                    }
+                }
+            });
+        }
+
+        private boolean shadows(FromItem fromItem) {
+            return fromItem instanceof Table && fromItem.getAlias() == null && from.equalsIgnoreCase(((Table) fromItem).getName());
+        }
+
+        void rename(Expression expression) {
+            if (expression != null) {
+                expression.accept(this);
+            }
+        }
+
+        void renameAll(Collection<Expression> expressions) {
+            if (expressions != null) {
+                for (Expression expression : expressions) {
+                    this.rename(expression);
+                }
+            }
+        }
+
+        @Override
+        public void visit(Column column) {
+            Table table = column.getTable();
+            if (table != null && table.getSchemaName() == null && from.equalsIgnoreCase(table.getName())) {
+                table.setName(to);
+            }
+        }
+    }
+
+    /**
+     * 租户标识的占位符，输出为 {@link CompiledSql#TENANT_PLACEHOLDER}，编译时用于切分改写结果。
+     */
+    static class TenantIdPlaceholder extends LongValue {
+
+        TenantIdPlaceholder() {
+            super(0L);
+        }
+
+        @Override
+        public String toString() {
+            return CompiledSql.TENANT_PLACEHOLDER;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.tenants.plugin.core.routing;
+
+import com.github.tenants.plugin.cache.PluginCache;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * 按租户路由的数据源，基于 Spring 的 AbstractRoutingDataSource 实现。
+ * 每次获取连接时根据当前租户选择目标数据源，目标数据源的key即为分片标识。
+ * <p>
+ * 用法：
+ * <pre>
+ * <code>
+ * &#64;Bean
+ * public DataSource dataSource(TenantShardRouter tenantShardRouter) {
+ *     TenantRoutingDataSource dataSource = new TenantRoutingDataSource(tenantShardRouter);
+ *     dataSource.setTargetDataSources(shards);
+ *     dataSource.setDefaultTargetDataSource(defaultDataSource);
+ *     return dataSource;
+ * }
+ * </code>
+ * </pre>
+ * 未能获取到租户时（如插件初始化时的表结构扫描）使用默认目标数据源。
+ *
+ * @author xierh
+ * @since 2026/10/19 10:46
+ */
+public class TenantRoutingDataSource extends AbstractRoutingDataSource {
+
+    private final TenantShardRouter tenantShardRouter;
+
+    public TenantRoutingDataSource(TenantShardRouter tenantShardRouter) {
+        this.tenantShardRouter = tenantShardRouter;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        PluginCache pluginCache = PluginCache.getInst();
+        return tenantShardRouter.determineCurrentShard(pluginCache == null ? null : pluginCache.tenantUserImplement);
+    }
+
+    public TenantShardRouter getTenantShardRouter() {
+        return tenantShardRouter;
+    }
+}
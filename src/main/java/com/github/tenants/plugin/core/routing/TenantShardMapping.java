@@ -0,0 +1,23 @@
+package com.github.tenants.plugin.core.routing;
+
+/**
+ * 租户与分片（目标数据源）的映射关系。
+ * 需要自主实现该接口并将实现类加载到Spring容器中，框架会优先使用该实现确定租户所在分片，
+ * 未提供实现或实现返回null时，才会使用配置项 tenant.routing.shards 中的静态映射。
+ * <p>
+ * 查询结果会被 {@link TenantShardRouter} 缓存在本地，因此实现可以是较重的查询（如查询路由库），
+ * 租户迁移分片后请调用 {@link TenantShardRouter#evict(Long)} 使缓存失效。
+ *
+ * @author xierh
+ * @since 2026/10/19 10:12
+ */
+public interface TenantShardMapping {
+
+    /**
+     * 获取租户所在分片的标识，该标识需要与 {@link TenantRoutingDataSource} 中目标数据源的key一致。
+     *
+     * @param tenantId 租户标识
+     * @return 分片标识，无法确定时返回null
+     */
+    String getShardKey(long tenantId);
+}
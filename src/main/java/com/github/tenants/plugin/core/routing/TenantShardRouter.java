@@ -0,0 +1,155 @@
+package com.github.tenants.plugin.core.routing;
+
+import com.github.tenants.plugin.TenantProperties;
+import com.github.tenants.plugin.core.TenantUserIdentity;
+import com.github.tenants.plugin.ex.TenantException;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 租户分片路由器，负责将租户标识解析为分片（目标数据源）标识。
+ * <p>
+ * 解析结果保存在本地的 ConcurrentHashMap 中，同一租户只会调用一次 {@link TenantShardMapping}。
+ * 拦截器在执行sql前获取一次租户，同时用于sql改写与路由，并将其绑定到当前线程，{@link TenantRoutingDataSource} 获取连接时优先使用该租户，
+ * 避免再次执行租户获取责任链；未绑定时（如事务开启时获取连接）才会通过责任链获取租户。
+ *
+ * @author xierh
+ * @since 2026/10/19 10:20
+ */
+public class TenantShardRouter {
+
+    /**
+     * 拦截器绑定到当前线程的租户标识
+     */
+    private final ThreadLocal<Long> routingTenant = new ThreadLocal<>();
+
+    /**
+     * 租户标识与分片标识的本地缓存
+     */
+    private final ConcurrentMap<Long, String> shardCache = new ConcurrentHashMap<>();
+
+    private final TenantProperties.Routing routing;
+
+    private final TenantShardMapping tenantShardMapping;
+
+    /**
+     * 使用给定的参数构造一个 TenantShardRouter 对象。
+     *
+     * @param routing            分片路由的相关配置
+     * @param tenantShardMapping 用户提供的租户与分片映射，可以为null
+     */
+    public TenantShardRouter(TenantProperties.Routing routing, TenantShardMapping tenantShardMapping) {
+        this.routing = routing;
+        this.tenantShardMapping = tenantShardMapping;
+    }
+
+    /**
+     * 解析租户所在的分片标识。
+     *
+     * @param tenantId 租户标识
+     * @return 分片标识
+     * @throws TenantException 如果租户未映射任何分片且未配置默认分片
+     */
+    public String resolveShard(long tenantId) {
+        String shard = shardCache.get(tenantId);
+        if (shard != null) {
+            return shard;
+        }
+        return shardCache.computeIfAbsent(tenantId, this::lookupShard);
+    }
+
+    private String lookupShard(Long tenantId) {
+        String shard = null;
+        if (tenantShardMapping != null) {
+            shard = tenantShardMapping.getShardKey(tenantId);
+        }
+        if (shard == null && routing.getShards() != null) {
+            shard = routing.getShards().get(tenantId);
+        }
+        if (shard == null) {
+            shard = routing.getDefaultShard();
+        }
+        if (shard == null) {
+            // 未映射的租户不能静默落到默认数据源，否则会读写到其他分片的数据
+            throw new TenantException("no shard is mapped for tenant " + tenantId);
+        }
+        return shard;
+    }
+
+    /**
+     * 确定当前线程应使用的分片标识，供 {@link TenantRoutingDataSource} 获取连接时调用。
+     *
+     * @param tenantUserIdentity 租户获取责任链，插件尚未初始化时为null
+     * @return 分片标识，无法获取租户时返回null，即使用路由数据源的默认数据源
+     */
+    public String determineCurrentShard(TenantUserIdentity tenantUserIdentity) {
+        Long tenantId = routingTenant.get();
+        if (tenantId == null) {
+            tenantId = this.resolveTenant(tenantUserIdentity);
+        }
+        return tenantId == null ? null : this.resolveShard(tenantId);
+    }
+
+    /**
+     * 将租户绑定到当前线程，绑定期间获取的连接都会路由到该租户所在的分片。
+     * 租户为null时不做绑定，调用方需在结束后使用返回值调用 {@link #restoreRoutingTenant(Long)}。
+     *
+     * @param tenantId 通过 {@link #resolveTenant(TenantUserIdentity)} 获取的租户标识，可以为null
+     * @return 绑定前当前线程上的租户标识
+     */
+    public Long bindRoutingTenant(Long tenantId) {
+        Long previous = routingTenant.get();
+        if (tenantId != null) {
+            routingTenant.set(tenantId);
+        }
+        return previous;
+    }
+
+    /**
+     * 恢复当前线程在 {@link #bindRoutingTenant(Long)} 之前绑定的租户。
+     *
+     * @param previous 绑定前的租户标识
+     */
+    public void restoreRoutingTenant(Long previous) {
+        if (previous == null) {
+            routingTenant.remove();
+        } else {
+            routingTenant.set(previous);
+        }
+    }
+
+    /**
+     * 使指定租户的分片缓存失效，通常在租户迁移分片后调用。
+     *
+     * @param tenantId 租户标识
+     */
+    public void evict(Long tenantId) {
+        shardCache.remove(tenantId);
+    }
+
+    /**
+     * 清空所有租户的分片缓存。
+     */
+    public void clear() {
+        shardCache.clear();
+    }
+
+    /**
+     * 通过责任链获取用于路由的租户。
+     *
+     * @param tenantUserIdentity 租户获取责任链，可以为null
+     * @return 租户标识，无法获取租户时返回null
+     */
+    public Long resolveTenant(TenantUserIdentity tenantUserIdentity) {
+        if (tenantUserIdentity == null) {
+            return null;
+        }
+        try {
+            return tenantUserIdentity.doGetTenantUserIdentity();
+        } catch (TenantException e) {
+            // 不涉及租户的sql（如启动时的表结构扫描）使用默认数据源
+            return null;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.tenants.plugin.core.telemetry;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁的 Count-Min Sketch，以固定的内存估算任意多个key的累计值。
+ * 估算值不会小于真实值，误差随宽度增大而减小。
+ * 每个计数器使用 LongAdder，热点key对应的计数器在并发写入时不会互相竞争。
+ *
+ * @author xierh
+ * @since 2026/10/19 21:50
+ */
+final class CountMinSketch {
+
+    private static final int DEPTH = 4;
+
+    private static final long[] SEEDS = {0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L};
+
+    private final LongAdder[] counters;
+
+    private final int mask;
+
+    /**
+     * 使用给定的宽度构造一个 CountMinSketch 对象。
+     *
+     * @param width 每一行的计数器个数，向上取整为2的幂
+     */
+    CountMinSketch(int width) {
+        int size = Integer.highestOneBit(Math.max(16, width - 1) << 1);
+        this.counters = new LongAdder[size * DEPTH];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+        this.mask = size - 1;
+    }
+
+    void add(long key, long value) {
+        for (int row = 0; row < DEPTH; row++) {
+            counters[this.index(row, key)].add(value);
+        }
+    }
+
+    long estimate(long key) {
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, counters[this.index(row, key)].sum());
+        }
+        return min;
+    }
+
+    void clear() {
+        for (LongAdder counter : counters) {
+            counter.reset();
+        }
+    }
+
+    private int index(int row, long key) {
+        long hash = (key ^ SEEDS[row]) * 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return row * (mask + 1) + (int) (hash & mask);
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.tenants.plugin.core.telemetry;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按2的幂划分区间的耗时直方图，区间i记录耗时在 [2^i, 2^(i+1)) 微秒之间的次数。
+ * 每个区间使用 LongAdder 计数，并发写入时不会互相竞争。
+ *
+ * @author xierh
+ * @since 2026/10/19 21:50
+ */
+final class LatencyHistogram {
+
+    private static final int BUCKETS = 40;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+    LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    void record(long micros) {
+        int bucket = micros <= 1 ? 0 : 63 - Long.numberOfLeadingZeros(micros);
+        buckets[Math.min(bucket, BUCKETS - 1)].increment();
+    }
+
+    /**
+     * 估算耗时的百分位数。
+     *
+     * @param percentile 百分位，取值 0~1
+     * @return 百分位数所在区间的上限（微秒），没有记录时返回0
+     */
+    long percentile(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * Math.min(1, Math.max(0, percentile)));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank && counts[i] > 0) {
+                return 1L << (i + 1);
+            }
+        }
+        return 1L << BUCKETS;
+    }
+
+    void clear() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+    }
+}
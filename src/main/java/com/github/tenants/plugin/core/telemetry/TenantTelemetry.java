@@ -0,0 +1,208 @@
+package com.github.tenants.plugin.core.telemetry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按租户与sql统计执行次数与耗时。
+ * <p>
+ * 总量与耗时直方图使用 LongAdder 计数；每个租户、每条sql的次数与耗时记录在 Count-Min Sketch 中，
+ * 并只保留累计耗时最多的若干个租户与sql，因此内存占用与租户数量无关。
+ * 所有统计均为无锁写入，已是热点的租户与sql在写入时只做一次查询，可以在任意线程调用。
+ *
+ * @author xierh
+ * @since 2026/10/19 21:50
+ */
+public class TenantTelemetry {
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder errors = new LongAdder();
+
+    private final LongAdder totalMicros = new LongAdder();
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private final CountMinSketch tenantCounts;
+
+    private final CountMinSketch tenantMicros;
+
+    private final CountMinSketch statementCounts;
+
+    private final CountMinSketch statementMicros;
+
+    private final TopK<Long> topTenants;
+
+    private final TopK<String> topStatements;
+
+    /**
+     * sqlId的64位哈希，sqlId的数量有限，缓存后无需每次计算
+     */
+    private final ConcurrentMap<String, Long> statementHashes = new ConcurrentHashMap<>();
+
+    /**
+     * 使用给定的参数构造一个 TenantTelemetry 对象。
+     *
+     * @param topK        保留的热点租户与热点sql的数量
+     * @param sketchWidth Count-Min Sketch 每一行的计数器个数，越大误差越小
+     */
+    public TenantTelemetry(int topK, int sketchWidth) {
+        this.tenantCounts = new CountMinSketch(sketchWidth);
+        this.tenantMicros = new CountMinSketch(sketchWidth);
+        this.statementCounts = new CountMinSketch(sketchWidth);
+        this.statementMicros = new CountMinSketch(sketchWidth);
+        this.topTenants = new TopK<>(topK, tenantMicros::estimate);
+        this.topStatements = new TopK<>(topK, statementId -> statementMicros.estimate(this.statementHash(statementId)));
+    }
+
+    /**
+     * 记录一次sql执行。
+     *
+     * @param tenantId    租户标识，sql不涉及多租户表时为null
+     * @param statementId mapper方法对应的sqlId
+     * @param nanos       耗时（纳秒）
+     * @param failed      是否执行失败
+     */
+    public void record(Long tenantId, String statementId, long nanos, boolean failed) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        count.increment();
+        totalMicros.add(micros);
+        latency.record(micros);
+        if (failed) {
+            errors.increment();
+        }
+        if (tenantId != null) {
+            tenantCounts.add(tenantId, 1);
+            tenantMicros.add(tenantId, micros);
+            topTenants.offer(tenantId);
+        }
+        long statementHash = this.statementHash(statementId);
+        statementCounts.add(statementHash, 1);
+        statementMicros.add(statementHash, micros);
+        topStatements.offer(statementId);
+    }
+
+    /**
+     * 获取累计耗时最多的租户。
+     *
+     * @return 租户的统计，按累计耗时从大到小排列
+     */
+    public List<Usage> getTopTenants() {
+        List<Usage> usages = new ArrayList<>();
+        for (Long tenantId : topTenants.keys()) {
+            usages.add(this.getTenantUsage(tenantId));
+        }
+        return usages;
+    }
+
+    /**
+     * 获取累计耗时最多的sql。
+     *
+     * @return sql的统计，按累计耗时从大到小排列
+     */
+    public List<Usage> getTopStatements() {
+        List<Usage> usages = new ArrayList<>();
+        for (String statementId : topStatements.keys()) {
+            long statementHash = this.statementHash(statementId);
+            usages.add(new Usage(statementId, statementCounts.estimate(statementHash), statementMicros.estimate(statementHash)));
+        }
+        return usages;
+    }
+
+    /**
+     * 估算给定租户的执行次数与累计耗时。
+     *
+     * @param tenantId 租户标识
+     * @return 租户的统计
+     */
+    public Usage getTenantUsage(long tenantId) {
+        return new Usage(Long.toString(tenantId), tenantCounts.estimate(tenantId), tenantMicros.estimate(tenantId));
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    public long getTotalMicros() {
+        return totalMicros.sum();
+    }
+
+    /**
+     * 估算sql耗时的百分位数。
+     *
+     * @param percentile 百分位，取值 0~1
+     * @return 百分位数（微秒），精度为2的幂
+     */
+    public long getLatencyPercentile(double percentile) {
+        return latency.percentile(percentile);
+    }
+
+    /**
+     * 清空所有统计。
+     */
+    public void reset() {
+        count.reset();
+        errors.reset();
+        totalMicros.reset();
+        latency.clear();
+        tenantCounts.clear();
+        tenantMicros.clear();
+        statementCounts.clear();
+        statementMicros.clear();
+        topTenants.clear();
+        topStatements.clear();
+    }
+
+    private long statementHash(String statementId) {
+        // computeIfAbsent 在Java 8中即使key已存在也会锁住所在的桶，先查询
+        Long statementHash = statementHashes.get(statementId);
+        return statementHash != null ? statementHash : statementHashes.computeIfAbsent(statementId, TenantTelemetry::hash);
+    }
+
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * 租户或sql的执行统计，数值为估算值，不会小于真实值。
+     */
+    public static class Usage {
+
+        private final String key;
+
+        private final long count;
+
+        private final long totalMicros;
+
+        public Usage(String key, long count, long totalMicros) {
+            this.key = key;
+            this.count = count;
+            this.totalMicros = totalMicros;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalMicros() {
+            return totalMicros;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.tenants.plugin.core.telemetry;
+
+import com.github.tenants.plugin.cache.PluginCache;
+import com.github.tenants.plugin.core.admission.TenantAdmissionController;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按租户统计sql执行情况的 actuator 端点，存在 spring-boot-actuator 且开启统计或租户限流时注册。
+ * <pre>
+ * GET    /actuator/tenantTelemetry            开启统计时包含总量、耗时百分位与热点租户、热点sql，开启租户限流时包含限流的统计
+ * GET    /actuator/tenantTelemetry/{tenantId} 单个租户的估算统计
+ * DELETE /actuator/tenantTelemetry            清空统计
+ * </pre>
+ *
+ * @author xierh
+ * @since 2026/10/19 21:50
+ */
+@Endpoint(id = "tenantTelemetry")
+public class TenantTelemetryEndpoint {
+
+    @ReadOperation
+    public Map<String, Object> telemetry() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        PluginCache pluginCache = PluginCache.getInst();
+        if (pluginCache == null) {
+            result.put("ready", false);
+            return result;
+        }
+        result.put("ready", true);
+        TenantTelemetry telemetry = pluginCache.getTenantTelemetry();
+        if (telemetry != null) {
+            result.put("count", telemetry.getCount());
+            result.put("errors", telemetry.getErrorCount());
+            result.put("totalMicros", telemetry.getTotalMicros());
+            Map<String, Long> latency = new LinkedHashMap<>();
+            latency.put("p50", telemetry.getLatencyPercentile(0.5));
+            latency.put("p90", telemetry.getLatencyPercentile(0.9));
+            latency.put("p99", telemetry.getLatencyPercentile(0.99));
+            latency.put("max", telemetry.getLatencyPercentile(1));
+            result.put("latencyMicros", latency);
+            result.put("topTenants", telemetry.getTopTenants());
+            result.put("topStatements", telemetry.getTopStatements());
+        }
+        TenantAdmissionController admissionController = pluginCache.getTenantAdmissionController();
+        if (admissionController != null) {
+            Map<String, Object> admission = new LinkedHashMap<>();
+            admission.put("admitted", admissionController.getAdmittedCount());
+            admission.put("throttled", admissionController.getThrottledCount());
+            admission.put("waited", admissionController.getWaitedCount());
+            admission.put("waitMicros", admissionController.getWaitNanos() / 1000);
+            admission.put("trackedTenants", admissionController.getTrackedTenantCount());
+            admission.put("throttledTenants", admissionController.getThrottledTenants());
+            result.put("admission", admission);
+        }
+        return result;
+    }
+
+    @ReadOperation
+    public TenantTelemetry.Usage tenant(@Selector long tenantId) {
+        TenantTelemetry telemetry = getTelemetry();
+        return telemetry == null ? null : telemetry.getTenantUsage(tenantId);
+    }
+
+    @DeleteOperation
+    public void reset() {
+        TenantTelemetry telemetry = getTelemetry();
+        if (telemetry != null) {
+            telemetry.reset();
+        }
+    }
+
+    private static TenantTelemetry getTelemetry() {
+        PluginCache pluginCache = PluginCache.getInst();
+        return pluginCache == null ? null : pluginCache.getTenantTelemetry();
+    }
+}
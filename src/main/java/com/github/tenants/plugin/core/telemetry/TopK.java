@@ -0,0 +1,92 @@
+package com.github.tenants.plugin.core.telemetry;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * 数量有上限的热点记录，只保留估算值最大的若干个key。
+ * 已记录的key直接返回，不做任何写入；估算值只在替换与读取时从 estimator 重新获取。
+ * 未记录的key只有超过当前最小值时才会替换最小的记录，替换是少数情况，加锁处理。
+ *
+ * @param <K> key的类型
+ * @author xierh
+ * @since 2026/10/19 21:50
+ */
+final class TopK<K> {
+
+    private final int capacity;
+
+    private final ToLongFunction<K> estimator;
+
+    private final Set<K> keys = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 最近一次替换时记录中的最小估算值，估算值只增不减，不超过该值的key一定不会进入记录，无需加锁比较
+     */
+    private volatile long floor = 0;
+
+    /**
+     * 使用给定的参数构造一个 TopK 对象。
+     *
+     * @param capacity  保留的key的数量
+     * @param estimator 获取key当前的估算值
+     */
+    TopK(int capacity, ToLongFunction<K> estimator) {
+        this.capacity = capacity;
+        this.estimator = estimator;
+    }
+
+    void offer(K key) {
+        if (capacity <= 0 || keys.contains(key)) {
+            return;
+        }
+        long estimate = estimator.applyAsLong(key);
+        if (keys.size() >= capacity && estimate <= floor) {
+            return;
+        }
+        synchronized (this) {
+            if (!keys.add(key) || keys.size() <= capacity) {
+                return;
+            }
+            K min = null;
+            long minEstimate = Long.MAX_VALUE;
+            long newFloor = Long.MAX_VALUE;
+            for (K tracked : keys) {
+                long value = tracked.equals(key) ? estimate : estimator.applyAsLong(tracked);
+                if (value < minEstimate) {
+                    newFloor = minEstimate;
+                    minEstimate = value;
+                    min = tracked;
+                } else {
+                    newFloor = Math.min(newFloor, value);
+                }
+            }
+            keys.remove(min);
+            this.floor = newFloor;
+        }
+    }
+
+    /**
+     * 获取当前记录的key，按估算值从大到小排列。
+     *
+     * @return 记录的key
+     */
+    List<K> keys() {
+        List<Map.Entry<K, Long>> sorted = new ArrayList<>();
+        for (K key : keys) {
+            sorted.add(new AbstractMap.SimpleImmutableEntry<>(key, estimator.applyAsLong(key)));
+        }
+        sorted.sort(Map.Entry.<K, Long>comparingByValue(Comparator.reverseOrder()));
+        List<K> result = new ArrayList<>(sorted.size());
+        for (Map.Entry<K, Long> entry : sorted) {
+            result.add(entry.getKey());
+        }
+        return result;
+    }
+
+    synchronized void clear() {
+        keys.clear();
+        floor = 0;
+    }
+}
@@ -0,0 +1,23 @@
+package com.github.tenants.plugin.ex;
+
+/**
+ * 表示租户的sql因超过并发或速率限制而被拒绝执行。
+ *
+ * @author xierh
+ * @since 2026/10/19 22:30
+ */
+public class TenantThrottledException extends TenantException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long tenantId;
+
+    public TenantThrottledException(long tenantId, String message) {
+        super(message);
+        this.tenantId = tenantId;
+    }
+
+    public long getTenantId() {
+        return tenantId;
+    }
+}
@@ -1,6 +1,7 @@
 package com.github.tenants.plugin.mapper;
 
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
 import java.util.List;
@@ -16,4 +17,15 @@ public interface StructureMapper {
 
     @Select("SELECT TABLE_NAME FROM INFORMATION_SCHEMA.COLUMNS WHERE COLUMN_NAME = #{columnName}")
     List<String> queryTablesByColumnName(String columnName);
+
+    /**
+     * 查询当前schema中存在以给定字段开头的索引的表，用于检查多租户表是否缺少租户字段的索引。
+     * INFORMATION_SCHEMA.STATISTICS 不是标准视图，不支持的数据库查询失败时改用 JDBC 元数据查询。
+     *
+     * @param schema     当前连接的schema，其他schema中的同名表不影响检查结果
+     * @param columnName 字段名
+     * @return 表名
+     */
+    @Select("SELECT DISTINCT TABLE_NAME FROM INFORMATION_SCHEMA.STATISTICS WHERE TABLE_SCHEMA = #{schema} AND SEQ_IN_INDEX = 1 AND COLUMN_NAME = #{columnName}")
+    List<String> queryTablesByLeadingIndexColumn(@Param("schema") String schema, @Param("columnName") String columnName);
 }
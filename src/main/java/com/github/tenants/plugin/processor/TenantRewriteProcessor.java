@@ -0,0 +1,167 @@
+package com.github.tenants.plugin.processor;
+
+import com.github.tenants.plugin.core.rewrite.CompiledSql;
+import com.github.tenants.plugin.core.rewrite.TenantRewriteIndex;
+import com.github.tenants.plugin.core.rewrite.TenantSqlRewriter;
+import net.sf.jsqlparser.JSQLParserException;
+
+import javax.annotation.processing.*;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * 在编译期预编译注解mapper中静态sql的注解处理器。
+ * <p>
+ * 处理器解析 {@code @Select}、{@code @Insert}、{@code @Update}、{@code @Delete} 中的静态sql，
+ * 按照给定的多租户表与多租户字段改写后，生成 {@link TenantRewriteIndex}，插件初始化时载入，运行时不再解析这些sql。
+ * 无法解析的sql默认使编译失败，而不是到运行时才被跳过。
+ * <p>
+ * 处理器只在指定了多租户表与多租户字段时生效，通过编译参数指定：
+ * <pre>
+ * -Atenant.targetTables=table1,table2
+ * -Atenant.targetColumn=tenants_id
+ * -Atenant.failOnError=false
+ * </pre>
+ * 处理器不在插件jar中注册，避免使用插件的项目编译时隐式执行，需要时将 classifier 为 processor 的jar加入
+ * maven-compiler-plugin 的 annotationProcessorPaths。
+ * 包含 {@code <script>} 或 {@code ${}} 的sql在运行时才能确定，不做处理。
+ * 表名改写规则与 AUTO 模式扫描到的表无法在编译期确定，运行时与索引不一致时索引不会被载入。
+ *
+ * @author xierh
+ * @since 2026/10/19 21:10
+ */
+@SupportedAnnotationTypes({"org.apache.ibatis.annotations.Select", "org.apache.ibatis.annotations.Insert",
+        "org.apache.ibatis.annotations.Update", "org.apache.ibatis.annotations.Delete"})
+@SupportedOptions({TenantRewriteProcessor.TARGET_TABLES, TenantRewriteProcessor.TARGET_COLUMN, TenantRewriteProcessor.FAIL_ON_ERROR})
+public class TenantRewriteProcessor extends AbstractProcessor {
+
+    static final String TARGET_TABLES = "tenant.targetTables";
+
+    static final String TARGET_COLUMN = "tenant.targetColumn";
+
+    static final String FAIL_ON_ERROR = "tenant.failOnError";
+
+    private static final Pattern PARAMETER = Pattern.compile("#\\{[^}]*}");
+
+    private final Map<String, CompiledSql> compiledSqls = new LinkedHashMap<>();
+
+    private List<String> targetTables;
+
+    private String targetColumn;
+
+    private TenantSqlRewriter tenantSqlRewriter;
+
+    private boolean failOnError;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        Map<String, String> options = processingEnv.getOptions();
+        String tables = options.get(TARGET_TABLES);
+        this.targetColumn = options.get(TARGET_COLUMN);
+        if (tables == null || targetColumn == null) {
+            return;
+        }
+        this.targetTables = new ArrayList<>();
+        for (String table : tables.split(",")) {
+            if (!table.trim().isEmpty()) {
+                this.targetTables.add(table.trim());
+            }
+        }
+        this.failOnError = !"false".equalsIgnoreCase(options.get(FAIL_ON_ERROR));
+        this.tenantSqlRewriter = new TenantSqlRewriter(targetTables, targetColumn, null);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (tenantSqlRewriter == null) {
+            return false;
+        }
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                this.compile(element, annotation);
+            }
+        }
+        if (roundEnv.processingOver() && !compiledSqls.isEmpty()) {
+            this.writeIndex();
+        }
+        return false;
+    }
+
+    /**
+     * 编译方法上注解中的静态sql。
+     *
+     * @param element    被注解的方法
+     * @param annotation 注解类型
+     */
+    private void compile(Element element, TypeElement annotation) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (!mirror.getAnnotationType().asElement().equals(annotation)) {
+                continue;
+            }
+            String sql = toRuntimeSql(mirror);
+            if (sql == null) {
+                return;
+            }
+            try {
+                compiledSqls.put(sql, tenantSqlRewriter.compile(sql));
+            } catch (JSQLParserException e) {
+                Diagnostic.Kind kind = failOnError ? Diagnostic.Kind.ERROR : Diagnostic.Kind.WARNING;
+                String message = e.getCause() == null ? e.getMessage() : e.getCause().getMessage();
+                processingEnv.getMessager().printMessage(kind, "failed to parse sql for tenant rewrite: " + message, element, mirror);
+            }
+        }
+    }
+
+    /**
+     * 将注解中的sql转换为运行时 MyBatis 生成的sql：多段sql以空格连接，参数替换为问号。
+     *
+     * @param mirror 注解
+     * @return 运行时的sql，动态sql返回null
+     */
+    private static String toRuntimeSql(AnnotationMirror mirror) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+            if (!entry.getKey().getSimpleName().contentEquals("value")) {
+                continue;
+            }
+            StringBuilder builder = new StringBuilder();
+            Object value = entry.getValue().getValue();
+            if (value instanceof List) {
+                for (Object fragment : (List<?>) value) {
+                    builder.append(((AnnotationValue) fragment).getValue()).append(' ');
+                }
+            } else {
+                builder.append(value);
+            }
+            String sql = builder.toString().trim();
+            if (sql.contains("<script>") || sql.contains("${")) {
+                return null;
+            }
+            return PARAMETER.matcher(sql).replaceAll("?");
+        }
+        return null;
+    }
+
+    private void writeIndex() {
+        try {
+            FileObject resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", TenantRewriteIndex.RESOURCE);
+            try (OutputStream out = resource.openOutputStream()) {
+                TenantRewriteIndex.store(out, targetTables, targetColumn, compiledSqls);
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "failed to write tenant rewrite index: " + e.getMessage());
+        }
+    }
+}
@@ -1,13 +1,18 @@
 package com.github.tenants.plugin.util;
 
 import com.github.tenants.plugin.ex.TenantException;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.reflection.property.PropertyTokenizer;
+import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.SqlSessionFactory;
 
-import java.lang.reflect.Field;
-import java.util.Map;
+import java.util.Collection;
 
 /**
  * MyBatis 框架的工具类。
+ * <p>
+ * 只使用 MyBatis 的公开API，不反射访问其内部字段，以兼容 GraalVM native-image 与较新的JDK。
  *
  * @author xierh
  * @since 2023/10/11 11:03
@@ -16,56 +21,39 @@ public class MybatisUtils {
 
 
     /**
-     * 反射性地从“MybatisMapperRegistry”类中检索“knownMappers”字段。
-     * “knownMappers”字段是一个映射，用于保存实体类及其相应的映射器接口之间的映射。
-     * 此方法允许通过“MybatisMapperProxyFactory”类访问此映射。
+     * 获取 SQL 会话工厂中已注册的所有mapper接口。
+     * mybatis-plus 的 MybatisConfiguration 会返回其自身的 MybatisMapperRegistry，同样适用。
      *
-     * @param sqlSessionFactory 用于检索“knownMappers”字段的 SQL 会话工厂。
-     * @return 包含实体类与其相应的“MybatisMapperProxyFactory”实例之间映射的映射。
-     * @throws TenantException 如果在检索“已知映射器”字段时发生错误。
+     * @param sqlSessionFactory SQL 会话工厂
+     * @return 已注册的mapper接口
+     * @throws TenantException 如果无法获取mapper列表
      */
-    public static Map<Class<?>, ?> getMapperRegistry(SqlSessionFactory sqlSessionFactory) {
-        Map<Class<?>, ?> knownMappers;
-        try {
-            Class<?> mapperRegistryClass = null;
-            try {
-                // 适配mybatisPlus
-                mapperRegistryClass = Class.forName("com.baomidou.mybatisplus.core.MybatisMapperRegistry");
-            } catch (ClassNotFoundException ex) {
-                mapperRegistryClass = Class.forName("org.apache.ibatis.binding.MapperRegistry");
-            } finally {
-                if (mapperRegistryClass == null) {
-                    throw new TenantException("unable to get mybatis mapper list");
-                }
-            }
-            Field mapperRegistryField = mapperRegistryClass.getDeclaredField("knownMappers");
-            mapperRegistryField.setAccessible(true);
-            Object mapperRegistryInstance = getMapperRegistryInstance(sqlSessionFactory);
-            knownMappers = (Map<Class<?>, ?>) mapperRegistryField.get(mapperRegistryInstance);
-        } catch (Exception e) {
-            throw new TenantException("unable to get mybatis mapper list", e);
+    public static Collection<Class<?>> getMappers(SqlSessionFactory sqlSessionFactory) {
+        Configuration configuration = sqlSessionFactory.getConfiguration();
+        if (configuration == null || configuration.getMapperRegistry() == null) {
+            throw new TenantException("unable to get mybatis mapper list");
         }
-        return knownMappers;
+        return configuration.getMapperRegistry().getMappers();
     }
 
     /**
-     * 从给定的 SQL 会话工厂中获取“MapperRegistry”实例。
+     * 使用新的sql复制 BoundSql。
+     * foreach、bind 等动态sql生成的附加参数按参数映射中引用的属性名复制到新的 BoundSql 中。
      *
-     * @param sqlSessionFactory SQL 会话工厂
-     * @return MapperRegistry 实例
-     * @throws NoSuchFieldException   如果找不到“mapperRegistry”或“mybatisMapperRegistry”字段
-     * @throws IllegalAccessException 如果无法访问“mapperRegistry”或“mybatisMapperRegistry”字段
+     * @param configuration MyBatis 配置
+     * @param boundSql      原 BoundSql
+     * @param sql           新的sql
+     * @return 复制后的 BoundSql
      */
-    private static Object getMapperRegistryInstance(SqlSessionFactory sqlSessionFactory) throws NoSuchFieldException, IllegalAccessException {
-        Field mybatisMapperRegistryField;
-        try {
-            mybatisMapperRegistryField = sqlSessionFactory.getConfiguration().getClass()
-                    .getDeclaredField("mapperRegistry");
-        } catch (NoSuchFieldException ex) {
-            mybatisMapperRegistryField = sqlSessionFactory.getConfiguration().getClass()
-                    .getDeclaredField("mybatisMapperRegistry");
+    public static BoundSql copyBoundSql(Configuration configuration, BoundSql boundSql, String sql) {
+        BoundSql copy = new BoundSql(configuration, sql, boundSql.getParameterMappings(), boundSql.getParameterObject());
+        for (ParameterMapping parameterMapping : boundSql.getParameterMappings()) {
+            // 附加参数以属性名的第一段保存，如 __frch_item_0.id 对应附加参数 __frch_item_0
+            String name = new PropertyTokenizer(parameterMapping.getProperty()).getName();
+            if (boundSql.hasAdditionalParameter(name) && !copy.hasAdditionalParameter(name)) {
+                copy.setAdditionalParameter(name, boundSql.getAdditionalParameter(name));
+            }
         }
-        mybatisMapperRegistryField.setAccessible(true);
-        return mybatisMapperRegistryField.get(sqlSessionFactory.getConfiguration());
+        return copy;
     }
 }
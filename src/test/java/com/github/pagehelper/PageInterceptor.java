@@ -0,0 +1,63 @@
+package com.github.pagehelper;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.*;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 测试用的分页插件，与 PageHelper 同名：像 PageHelper 一样直接在内层 Executor 上执行由原sql生成的 count 查询，
+ * 记录看到的sql与 count 结果。
+ *
+ * @author xierh
+ * @since 2026/10/20 18:00
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class}),
+})
+public class PageInterceptor implements Interceptor {
+
+    private final List<String> seenSqls = Collections.synchronizedList(new ArrayList<>());
+
+    private final List<Long> counts = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        Executor executor = (Executor) invocation.getTarget();
+        Object[] args = invocation.getArgs();
+        MappedStatement ms = (MappedStatement) args[0];
+        Object parameter = args[1];
+        BoundSql boundSql = args.length == 6 ? (BoundSql) args[5] : ms.getBoundSql(parameter);
+        seenSqls.add(boundSql.getSql());
+        String countSql = "SELECT COUNT(*) FROM (" + boundSql.getSql() + ") page_count";
+        MappedStatement countMs = new MappedStatement.Builder(ms.getConfiguration(), ms.getId() + "_COUNT",
+                new StaticSqlSource(ms.getConfiguration(), countSql), SqlCommandType.SELECT)
+                .resultMaps(Collections.singletonList(new ResultMap.Builder(ms.getConfiguration(), ms.getId() + "_COUNT",
+                        Long.class, Collections.emptyList()).build()))
+                .build();
+        BoundSql countBoundSql = new BoundSql(ms.getConfiguration(), countSql, boundSql.getParameterMappings(), parameter);
+        List<Object> result = executor.query(countMs, parameter, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER,
+                executor.createCacheKey(countMs, parameter, RowBounds.DEFAULT, countBoundSql), countBoundSql);
+        counts.add(((Number) result.get(0)).longValue());
+        return invocation.proceed();
+    }
+
+    public List<String> getSeenSqls() {
+        return seenSqls;
+    }
+
+    public List<Long> getCounts() {
+        return counts;
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.tenants.plugin.cache;
+
+import com.github.tenants.plugin.TenantProperties;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * {@link PluginCache} 在发布后才生效，重建时沿用执行统计与准入控制器。
+ *
+ * @author xierh
+ * @since 2026/10/20 15:10
+ */
+class PluginCacheTest {
+
+    @Test
+    void publishReplacesInstanceAndInheritKeepsRuntimeState() {
+        SqlSessionFactory sqlSessionFactory = new SqlSessionFactoryBuilder().build(new Configuration());
+        TenantProperties tenantProperties = new TenantProperties();
+        tenantProperties.setScanMode(TenantProperties.TenantMode.ASSIGN);
+        tenantProperties.setTargetTables(new ArrayList<>(Collections.singletonList("orders")));
+        tenantProperties.setTargetColumns(Collections.singletonList("tenant_id"));
+        tenantProperties.getTelemetry().setEnabled(true);
+        tenantProperties.getAdmission().setEnabled(true);
+
+        PluginCache first = new PluginCache(Collections.singletonList(sqlSessionFactory), tenantProperties, null);
+        first.publish();
+        PluginCache second = new PluginCache(Collections.singletonList(sqlSessionFactory), tenantProperties, null);
+        assertSame(first, PluginCache.getInst());
+        assertNotSame(first.getTenantTelemetry(), second.getTenantTelemetry());
+
+        second.inherit(first);
+        second.publish();
+        assertSame(second, PluginCache.getInst());
+        assertSame(first.getTenantTelemetry(), second.getTenantTelemetry());
+        assertSame(first.getTenantAdmissionController(), second.getTenantAdmissionController());
+    }
+}
@@ -0,0 +1,107 @@
+package com.github.tenants.plugin.cache;
+
+import com.github.tenants.plugin.TenantProperties;
+import com.github.tenants.plugin.core.rewrite.CompiledSql;
+import com.github.tenants.plugin.core.rewrite.TenantSqlRewriter;
+import net.sf.jsqlparser.JSQLParserException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link SqlRewriteStore} 的读写与配置指纹，载入按其他配置改写的结果会直接破坏租户隔离。
+ *
+ * @author xierh
+ * @since 2026/10/20 11:30
+ */
+class SqlRewriteStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private static TenantProperties properties() {
+        TenantProperties tenantProperties = new TenantProperties();
+        tenantProperties.setTargetColumns(Collections.singletonList("tenant_id"));
+        tenantProperties.setTargetTables(Arrays.asList("orders", "item"));
+        return tenantProperties;
+    }
+
+    private static SqlRewriteCache cache() throws JSQLParserException {
+        TenantSqlRewriter rewriter = new TenantSqlRewriter(Arrays.asList("orders", "item"), "tenant_id", null);
+        SqlRewriteCache sqlRewriteCache = new SqlRewriteCache(16);
+        for (String sql : new String[]{"select * from orders where id = ?", "select * from other", "insert into item (a) values ('中文')"}) {
+            sqlRewriteCache.put(sql, rewriter.compile(sql));
+        }
+        return sqlRewriteCache;
+    }
+
+    @Test
+    void roundTrip() throws JSQLParserException {
+        SqlRewriteCache saved = cache();
+        long fingerprint = SqlRewriteStore.fingerprint(properties());
+        SqlRewriteStore store = new SqlRewriteStore(dir.resolve("rewrites.bin"), fingerprint);
+        assertEquals(3, store.save(saved));
+
+        SqlRewriteCache loaded = new SqlRewriteCache(16);
+        assertEquals(3, new SqlRewriteStore(dir.resolve("rewrites.bin"), fingerprint).load(loaded));
+        for (String sql : saved.asMap().keySet()) {
+            CompiledSql expected = saved.getEntry(sql).getCompiledSql();
+            CompiledSql actual = loaded.getEntry(sql).getCompiledSql();
+            assertEquals(expected.isTenantAware(), actual.isTenantAware());
+            assertEquals(expected.render(5), actual.render(5));
+        }
+    }
+
+    @Test
+    void fingerprintCoversTenantConfiguration() {
+        long fingerprint = SqlRewriteStore.fingerprint(properties());
+        assertEquals(fingerprint, SqlRewriteStore.fingerprint(properties()));
+
+        TenantProperties tables = properties();
+        tables.setTargetTables(Collections.singletonList("orders"));
+        assertNotEquals(fingerprint, SqlRewriteStore.fingerprint(tables));
+
+        TenantProperties column = properties();
+        column.setTargetColumns(Collections.singletonList("org_id"));
+        assertNotEquals(fingerprint, SqlRewriteStore.fingerprint(column));
+
+        TenantProperties policy = properties();
+        policy.getParse().setFailurePolicy(TenantProperties.ParseFailurePolicy.REGEX);
+        assertNotEquals(fingerprint, SqlRewriteStore.fingerprint(policy));
+
+        TenantProperties rewrites = properties();
+        rewrites.setTableRewrites(Collections.singletonMap("orders", new TenantProperties.TableRewrite()));
+        assertNotEquals(fingerprint, SqlRewriteStore.fingerprint(rewrites));
+    }
+
+    @Test
+    void storeWithAnotherFingerprintIsIgnored() throws JSQLParserException {
+        Path path = dir.resolve("rewrites.bin");
+        new SqlRewriteStore(path, 1L).save(cache());
+        SqlRewriteCache loaded = new SqlRewriteCache(16);
+        assertEquals(0, new SqlRewriteStore(path, 2L).load(loaded));
+        assertEquals(0, loaded.size());
+    }
+
+    @Test
+    void corruptedEntriesStopLoading() throws JSQLParserException, IOException {
+        Path path = dir.resolve("rewrites.bin");
+        new SqlRewriteStore(path, 1L).save(cache());
+        byte[] bytes = Files.readAllBytes(path);
+        // 篡改最后一条记录的最后一个字节，之前的记录仍可载入
+        bytes[bytes.length - 1] ^= 0x01;
+        Files.write(path, bytes);
+        SqlRewriteCache loaded = new SqlRewriteCache(16);
+        assertEquals(2, new SqlRewriteStore(path, 1L).load(loaded));
+
+        Files.write(path, Arrays.copyOf(bytes, 20));
+        assertEquals(0, new SqlRewriteStore(path, 1L).load(new SqlRewriteCache(16)));
+    }
+}
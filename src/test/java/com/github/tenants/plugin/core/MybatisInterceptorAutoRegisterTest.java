@@ -0,0 +1,131 @@
+package com.github.tenants.plugin.core;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.github.pagehelper.PageInterceptor;
+import com.github.tenants.plugin.TenantProperties;
+import com.github.tenants.plugin.cache.PluginCache;
+import com.github.tenants.plugin.core.interceptor.TenantSqlInterceptor;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.support.GenericApplicationContext;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link MybatisInterceptorAutoRegister} 在所有单例创建完成后注册拦截器，使其位于分页插件的外层，
+ * 分页插件生成的 count 查询与分页查询使用的都是已改写的sql。
+ *
+ * @author xierh
+ * @since 2026/10/20 18:00
+ */
+class MybatisInterceptorAutoRegisterTest {
+
+    private static int databases = 0;
+
+    public interface OrderMapper {
+
+        @Select("select id from orders order by id")
+        List<Integer> list();
+    }
+
+    private SqlSessionFactory sqlSessionFactory;
+
+    private final TenantSqlInterceptor tenantSqlInterceptor = new TenantSqlInterceptor();
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        UnpooledDataSource dataSource = new UnpooledDataSource("org.h2.Driver",
+                "jdbc:h2:mem:auto_register_" + databases++ + ";DB_CLOSE_DELAY=-1", "sa", "");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("create table orders (id int, tenant_id bigint)");
+            statement.execute("insert into orders values (1, 1), (2, 1), (3, 2)");
+        }
+        Configuration configuration = new Configuration(new Environment("test", new JdbcTransactionFactory(), dataSource));
+        configuration.addMapper(OrderMapper.class);
+        sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+
+        TenantProperties tenantProperties = new TenantProperties();
+        tenantProperties.setScanMode(TenantProperties.TenantMode.ASSIGN);
+        tenantProperties.setTargetTables(new ArrayList<>(Collections.singletonList("orders")));
+        tenantProperties.setTargetColumns(Collections.singletonList("tenant_id"));
+        new PluginCache(Collections.singletonList(sqlSessionFactory), tenantProperties, new TenantUserIdentity() {
+            @Override
+            public Long getTenantUserIdentity() {
+                return 1L;
+            }
+        }).publish();
+    }
+
+    private GenericApplicationContext context(PageInterceptor pageInterceptor) {
+        GenericApplicationContext context = new GenericApplicationContext();
+        TenantProperties tenantProperties = PluginCache.getInst().getTenantProperties();
+        context.registerBean(MybatisInterceptorAutoRegister.class,
+                () -> new MybatisInterceptorAutoRegister(tenantProperties, tenantSqlInterceptor, context));
+        context.registerBean(SqlSessionFactory.class, () -> sqlSessionFactory);
+        // 与 PageHelper 的自动配置一样，在单例创建过程中注册分页插件
+        context.registerBean("pageHelperAutoConfiguration", Object.class, () -> {
+            sqlSessionFactory.getConfiguration().addInterceptor(pageInterceptor);
+            return new Object();
+        });
+        context.refresh();
+        return context;
+    }
+
+    @Test
+    void paginationSeesRewrittenSql() {
+        PageInterceptor pageInterceptor = new PageInterceptor();
+        try (GenericApplicationContext context = this.context(pageInterceptor)) {
+            List<Interceptor> interceptors = sqlSessionFactory.getConfiguration().getInterceptors();
+            assertSame(tenantSqlInterceptor, interceptors.get(interceptors.size() - 1));
+
+            try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+                assertEquals(2, sqlSession.getMapper(OrderMapper.class).list().size());
+            }
+            assertEquals(1, pageInterceptor.getSeenSqls().size());
+            assertTrue(pageInterceptor.getSeenSqls().get(0).contains("tenant_id = 1"), pageInterceptor.getSeenSqls().get(0));
+            assertEquals(Collections.singletonList(2L), pageInterceptor.getCounts());
+
+            // 再次触发注册时不会重复添加
+            context.getBean(MybatisInterceptorAutoRegister.class).afterSingletonsInstantiated();
+            assertEquals(1, sqlSessionFactory.getConfiguration().getInterceptors().stream()
+                    .filter(interceptor -> interceptor == tenantSqlInterceptor).count());
+        }
+    }
+
+    @Test
+    void paginationOutsideTheTenantInterceptorIsReported() {
+        // 手动注册时顺序不当，分页插件位于外层
+        sqlSessionFactory.getConfiguration().addInterceptor(tenantSqlInterceptor);
+        PageInterceptor pageInterceptor = new PageInterceptor();
+        Logger logger = (Logger) LoggerFactory.getLogger(MybatisInterceptorAutoRegister.class);
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        appender.start();
+        logger.addAppender(appender);
+        try (GenericApplicationContext ignored = this.context(pageInterceptor)) {
+            assertEquals(1, sqlSessionFactory.getConfiguration().getInterceptors().stream()
+                    .filter(interceptor -> interceptor == tenantSqlInterceptor).count());
+            assertTrue(appender.list.stream().anyMatch(event -> event.getFormattedMessage().contains(PageInterceptor.class.getName())));
+        } finally {
+            logger.detachAppender(appender);
+        }
+    }
+}
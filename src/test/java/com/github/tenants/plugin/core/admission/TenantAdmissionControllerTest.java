@@ -0,0 +1,65 @@
+package com.github.tenants.plugin.core.admission;
+
+import com.github.tenants.plugin.TenantProperties;
+import com.github.tenants.plugin.ex.TenantThrottledException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link TenantAdmissionController} 的并发数与速率限制。
+ *
+ * @author xierh
+ * @since 2026/10/20 12:30
+ */
+class TenantAdmissionControllerTest {
+
+    private static TenantProperties.Admission admission(int maxConcurrent, double rate, int burst) {
+        TenantProperties.Admission admission = new TenantProperties.Admission();
+        admission.setEnabled(true);
+        admission.setMaxConcurrent(maxConcurrent);
+        admission.setRate(rate);
+        admission.setBurst(burst);
+        admission.setMode(TenantProperties.AdmissionMode.FAIL_FAST);
+        return admission;
+    }
+
+    @Test
+    void rateAllowsBurstThenThrottles() {
+        TenantAdmissionController controller = new TenantAdmissionController(admission(0, 1, 3));
+        for (int i = 0; i < 3; i++) {
+            controller.release(controller.acquire(1));
+        }
+        TenantThrottledException e = assertThrows(TenantThrottledException.class, () -> controller.acquire(1));
+        assertEquals(1, e.getTenantId());
+        // 其他租户不受影响
+        controller.release(controller.acquire(2));
+        assertEquals(4, controller.getAdmittedCount());
+        assertEquals(1, controller.getThrottledCount());
+    }
+
+    @Test
+    void concurrencyLimitIsPerTenant() {
+        TenantAdmissionController controller = new TenantAdmissionController(admission(2, 0, 0));
+        TenantAdmissionController.TenantPermits first = controller.acquire(1);
+        controller.acquire(1);
+        assertThrows(TenantThrottledException.class, () -> controller.acquire(1));
+        controller.acquire(2);
+        controller.release(first);
+        controller.acquire(1);
+        assertEquals(1, controller.getThrottledTenants().get(1L));
+    }
+
+    @Test
+    void concurrencyRejectionDoesNotConsumeRate() {
+        TenantAdmissionController controller = new TenantAdmissionController(admission(1, 1, 2));
+        TenantAdmissionController.TenantPermits held = controller.acquire(1);
+        for (int i = 0; i < 5; i++) {
+            assertThrows(TenantThrottledException.class, () -> controller.acquire(1));
+        }
+        controller.release(held);
+        // 突发容量为2，被并发数拒绝的执行没有占用速率，第二次执行仍可通过
+        controller.release(controller.acquire(1));
+        assertThrows(TenantThrottledException.class, () -> controller.acquire(1));
+    }
+}
@@ -0,0 +1,47 @@
+package com.github.tenants.plugin.core.advisor;
+
+import com.github.tenants.plugin.mapper.StructureMapper;
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * {@link TenantIndexAdvisor} 只检查当前schema中的索引。
+ *
+ * @author xierh
+ * @since 2026/10/20 13:00
+ */
+class TenantIndexAdvisorTest {
+
+    @Test
+    void sameNamedTableInAnotherSchemaDoesNotCount() throws SQLException {
+        UnpooledDataSource dataSource = new UnpooledDataSource("org.h2.Driver", "jdbc:h2:mem:advisor;DB_CLOSE_DELAY=-1", "sa", "");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("create table orders (id int, tenant_id bigint)");
+            statement.execute("create table bill (id int, tenant_id bigint)");
+            statement.execute("create index ix_bill on bill (tenant_id, id)");
+            statement.execute("create schema other");
+            statement.execute("create table other.orders (id int, tenant_id bigint)");
+            statement.execute("create index ix_other_orders on other.orders (tenant_id)");
+        }
+        Configuration configuration = new Configuration(new Environment("test", new JdbcTransactionFactory(), dataSource));
+        configuration.addMapper(StructureMapper.class);
+        SqlSessionFactory sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+
+        assertEquals(new HashSet<>(Collections.singletonList("BILL")),
+                TenantIndexAdvisor.findIndexedTables(sqlSessionFactory, "TENANT_ID", Arrays.asList("ORDERS", "BILL")));
+    }
+}
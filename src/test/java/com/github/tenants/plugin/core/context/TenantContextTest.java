@@ -0,0 +1,141 @@
+package com.github.tenants.plugin.core.context;
+
+import com.github.tenants.plugin.TenantProperties;
+import com.github.tenants.plugin.cache.PluginCache;
+import com.github.tenants.plugin.core.TenantUserIdentity;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link TenantContext} 与线程池包装在线程之间传递租户，任务结束或抛出异常后恢复线程上原来的租户。
+ *
+ * @author xierh
+ * @since 2026/10/20 17:00
+ */
+class TenantContextTest {
+
+    /**
+     * 责任链获取到的租户，为null时责任链无法获取租户
+     */
+    private static volatile Long requestTenant;
+
+    private static final AtomicInteger CHAIN_CALLS = new AtomicInteger();
+
+    private ExecutorService executorService;
+
+    @BeforeEach
+    void setUp() {
+        TenantProperties tenantProperties = new TenantProperties();
+        tenantProperties.setScanMode(TenantProperties.TenantMode.ASSIGN);
+        tenantProperties.setTargetTables(new ArrayList<>(Collections.singletonList("orders")));
+        tenantProperties.setTargetColumns(Collections.singletonList("tenant_id"));
+        TenantUserIdentity tenantUserIdentity = new TenantUserIdentity() {
+            @Override
+            public Long getTenantUserIdentity() {
+                CHAIN_CALLS.incrementAndGet();
+                return requestTenant;
+            }
+        };
+        new PluginCache(Collections.singletonList(new SqlSessionFactoryBuilder().build(new Configuration())), tenantProperties,
+                tenantUserIdentity).publish();
+        requestTenant = null;
+        CHAIN_CALLS.set(0);
+        executorService = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    void whereBindsAndRestoresNestedTenants() throws Exception {
+        assertNull(TenantContext.current());
+        TenantContext.where(1).run(() -> {
+            assertEquals(1L, TenantContext.current());
+            try {
+                assertEquals(2L, TenantContext.where(2).call(TenantContext::current));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            assertEquals(1L, TenantContext.current());
+        });
+        assertNull(TenantContext.current());
+    }
+
+    @Test
+    void captureResolvesChainOnceAndBoundTenantWins() {
+        requestTenant = 3L;
+        assertEquals(3L, TenantContext.capture().getTenantId());
+        assertEquals(1, CHAIN_CALLS.get());
+        // 已绑定租户时直接使用，不再执行责任链
+        TenantContext.where(4).run(() -> assertEquals(4L, TenantContext.capture().getTenantId()));
+        assertEquals(1, CHAIN_CALLS.get());
+    }
+
+    @Test
+    void captureWithoutTenantCarriesNothing() throws Exception {
+        Future<Long> future = TenantContext.wrap(executorService).submit(TenantContext::current);
+        assertNull(future.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void executorServiceCarriesSubmittingTenant() throws Exception {
+        ExecutorService wrapped = TenantContext.wrap(executorService);
+        assertEquals(5L, TenantContext.where(5).call(() -> wrapped.submit(TenantContext::current).get(5, TimeUnit.SECONDS)));
+        List<Future<Long>> futures = TenantContext.where(6).call(() -> wrapped.invokeAll(
+                Arrays.<Callable<Long>>asList(TenantContext::current, TenantContext::current)));
+        for (Future<Long> future : futures) {
+            assertEquals(6L, future.get());
+        }
+        // 任务结束后工作线程上不残留租户
+        assertNull(executorService.submit(TenantContext::current).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void executorCarriesSubmittingTenant() throws Exception {
+        CompletableFuture<Long> seen = new CompletableFuture<>();
+        TenantContext.where(7).run(() -> TenantContext.wrap((Executor) executorService).execute(() -> seen.complete(TenantContext.current())));
+        assertEquals(7L, seen.get(5, TimeUnit.SECONDS));
+        assertNull(executorService.submit(TenantContext::current).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void tenantIsClearedAfterTaskThrows() throws Exception {
+        Future<?> failed = TenantContext.where(8).call(() -> TenantContext.wrap(executorService).submit(() -> {
+            throw new IllegalStateException("boom");
+        }));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertEquals("boom", e.getCause().getMessage());
+        assertNull(executorService.submit(TenantContext::current).get(5, TimeUnit.SECONDS));
+
+        // 当前线程上原来的租户同样会被恢复
+        TenantContext.where(9).run(() -> {
+            assertThrows(IllegalStateException.class, () -> TenantContext.where(10).run(() -> {
+                throw new IllegalStateException("boom");
+            }));
+            assertEquals(9L, TenantContext.current());
+        });
+    }
+
+    @Test
+    void taskDecoratorCarriesSubmittingTenant() throws Exception {
+        Runnable decorated = TenantContext.where(11).call(() -> new TenantContextTaskDecorator().decorate(() -> {
+            assertEquals(11L, TenantContext.current());
+        }));
+        executorService.submit(decorated).get(5, TimeUnit.SECONDS);
+        assertNull(executorService.submit(TenantContext::current).get(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,235 @@
+package com.github.tenants.plugin.core.init;
+
+import com.github.tenants.plugin.TenantProperties;
+import com.github.tenants.plugin.cache.PluginCache;
+import com.github.tenants.plugin.core.TenantUserIdentity;
+import com.github.tenants.plugin.core.interceptor.TenantSqlInterceptor;
+import com.github.tenants.plugin.core.telemetry.TenantTelemetry;
+import com.github.tenants.plugin.ex.TenantException;
+import com.github.tenants.plugin.mapper.StructureMapper;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.*;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.GenericApplicationContext;
+
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link TenantPluginInitializer} 的状态变化、异步初始化期间拦截器的等待以及重建。
+ *
+ * @author xierh
+ * @since 2026/10/20 17:30
+ */
+class TenantPluginInitializerTest {
+
+    private static int databases = 0;
+
+    public interface OrderMapper {
+
+        @Select("select count(*) from ORDERS")
+        long count();
+    }
+
+    /**
+     * 阻塞插件查询数据库结构的sql，用于模拟耗时的初始化
+     */
+    @Intercepts(@Signature(type = Executor.class, method = "query",
+            args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}))
+    public static class BlockingStructureInterceptor implements Interceptor {
+
+        private final CountDownLatch release;
+
+        BlockingStructureInterceptor(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            MappedStatement ms = (MappedStatement) invocation.getArgs()[0];
+            if (ms.getId().startsWith(StructureMapper.class.getName() + ".")) {
+                release.await();
+            }
+            return invocation.proceed();
+        }
+    }
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final TenantSqlInterceptor tenantSqlInterceptor = new TenantSqlInterceptor();
+
+    private GenericApplicationContext context;
+
+    private SqlSessionFactory sqlSessionFactory;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        clearPluginCache();
+        UnpooledDataSource dataSource = new UnpooledDataSource("org.h2.Driver",
+                "jdbc:h2:mem:initializer_" + databases++ + ";DB_CLOSE_DELAY=-1", "sa", "");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("create table orders (id int, tenant_id bigint)");
+            statement.execute("insert into orders values (1, 1), (2, 1), (3, 2)");
+        }
+        Configuration configuration = new Configuration(new Environment("test", new JdbcTransactionFactory(), dataSource));
+        configuration.addMapper(OrderMapper.class);
+        // 租户拦截器在外层，插件查询数据库结构的sql先经过租户拦截器
+        configuration.addInterceptor(new BlockingStructureInterceptor(release));
+        configuration.addInterceptor(tenantSqlInterceptor);
+        sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+        context = new GenericApplicationContext();
+        context.registerBean(SqlSessionFactory.class, () -> sqlSessionFactory);
+        context.refresh();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        release.countDown();
+        // 等待后台初始化线程发布就绪事件后再关闭容器
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if ("tenant-init".equals(thread.getName())) {
+                thread.join(5000);
+            }
+        }
+        context.close();
+        clearPluginCache();
+    }
+
+    private static void clearPluginCache() throws ReflectiveOperationException {
+        Field inst = PluginCache.class.getDeclaredField("inst");
+        inst.setAccessible(true);
+        inst.set(null, null);
+    }
+
+    private TenantPluginInitializer initializer(long awaitTimeout) {
+        TenantProperties tenantProperties = new TenantProperties();
+        tenantProperties.setTargetColumns(Collections.singletonList("TENANT_ID"));
+        tenantProperties.setIndexAdvisor(false);
+        tenantProperties.getInit().setAwaitTimeout(awaitTimeout);
+        tenantProperties.getTelemetry().setEnabled(true);
+        TenantPluginInitializer initializer = new TenantPluginInitializer(context, tenantProperties);
+        tenantSqlInterceptor.setTenantPluginInitializer(initializer);
+        return initializer;
+    }
+
+    private static TenantUserIdentity tenant(long tenantId) {
+        return new TenantUserIdentity() {
+            @Override
+            public Long getTenantUserIdentity() {
+                return tenantId;
+            }
+        };
+    }
+
+    private long count() {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+            return sqlSession.getMapper(OrderMapper.class).count();
+        }
+    }
+
+    @Test
+    void interceptorWaitsForAsyncInitialization() throws Exception {
+        TenantPluginInitializer initializer = this.initializer(0);
+        initializer.initializeAsync(tenant(1));
+        assertEquals(TenantPluginInitializer.State.STARTING, initializer.getState());
+
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            Future<Long> count = executorService.submit(this::count);
+            // 插件就绪前，涉及多租户表的sql不会未经隔离直接执行
+            assertThrows(TimeoutException.class, () -> count.get(200, TimeUnit.MILLISECONDS));
+            release.countDown();
+            assertEquals(2, count.get(5, TimeUnit.SECONDS));
+        } finally {
+            executorService.shutdownNow();
+        }
+        assertEquals(TenantPluginInitializer.State.READY, initializer.getState());
+        assertNotNull(PluginCache.getInst());
+    }
+
+    @Test
+    void awaitReadyTimesOut() {
+        TenantPluginInitializer initializer = this.initializer(100);
+        // 未开始异步初始化时不等待
+        assertNull(initializer.awaitReady());
+        initializer.initializeAsync(tenant(1));
+        TenantException e = assertThrows(TenantException.class, initializer::awaitReady);
+        assertTrue(e.getMessage().contains("not ready"));
+        PersistenceException rejected = assertThrows(PersistenceException.class, this::count);
+        assertTrue(rejected.getCause() instanceof TenantException);
+        release.countDown();
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            while (initializer.getState() == TenantPluginInitializer.State.STARTING) {
+                Thread.sleep(10);
+            }
+        });
+        assertNotNull(initializer.awaitReady());
+    }
+
+    @Test
+    void structureQueriesDoNotWaitForInitialization() {
+        TenantPluginInitializer initializer = this.initializer(0);
+        release.countDown();
+        // 初始化时插件自身的sql经过租户拦截器，若等待初始化完成则会一直阻塞
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            initializer.initializeAsync(tenant(1));
+            assertNotNull(initializer.awaitReady());
+        });
+        assertEquals(2, this.count());
+    }
+
+    @Test
+    void failedInitializationIsReported() {
+        GenericApplicationContext empty = new GenericApplicationContext();
+        empty.refresh();
+        TenantProperties tenantProperties = new TenantProperties();
+        tenantProperties.setTargetColumns(Collections.singletonList("TENANT_ID"));
+        TenantPluginInitializer initializer = new TenantPluginInitializer(empty, tenantProperties);
+
+        assertThrows(TenantException.class, () -> initializer.initialize(tenant(1)));
+        assertEquals(TenantPluginInitializer.State.FAILED, initializer.getState());
+        assertTrue(initializer.getFailure().getMessage().contains("no SqlSessionFactory"));
+        assertThrows(TenantException.class, initializer::awaitReady);
+        assertThrows(TenantException.class, initializer::rebuild);
+        assertNull(PluginCache.getInst());
+        empty.close();
+    }
+
+    @Test
+    void rebuildPublishesNewCacheAndKeepsTelemetry() {
+        TenantPluginInitializer initializer = this.initializer(0);
+        release.countDown();
+        PluginCache first = initializer.initialize(tenant(2));
+        assertSame(first, PluginCache.getInst());
+        assertEquals(1, this.count());
+        String statementId = OrderMapper.class.getName() + ".count";
+
+        PluginCache second = initializer.rebuild();
+        assertNotSame(first, second);
+        assertSame(second, PluginCache.getInst());
+        assertSame(first.getTenantTelemetry(), second.getTenantTelemetry());
+        assertEquals(1, this.count());
+        TenantTelemetry.Usage usage = second.getTenantTelemetry().getTopStatements().stream()
+                .filter(statement -> statement.getKey().equals(statementId)).findFirst().orElse(null);
+        assertNotNull(usage);
+        assertEquals(2, usage.getCount());
+    }
+}
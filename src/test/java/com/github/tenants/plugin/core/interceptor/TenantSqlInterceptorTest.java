@@ -0,0 +1,75 @@
+package com.github.tenants.plugin.core.interceptor;
+
+import com.github.tenants.plugin.TenantProperties;
+import com.github.tenants.plugin.cache.PluginCache;
+import com.github.tenants.plugin.core.TenantUserIdentity;
+import com.github.tenants.plugin.core.routing.TenantShardRouter;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * {@link TenantSqlInterceptor} 在启用分片路由时只执行一次租户获取责任链。
+ *
+ * @author xierh
+ * @since 2026/10/20 16:40
+ */
+class TenantSqlInterceptorTest {
+
+    public interface OrderMapper {
+
+        @Select("select count(*) from orders")
+        long count();
+    }
+
+    @Test
+    void routingResolvesTenantOnce() throws SQLException {
+        UnpooledDataSource dataSource = new UnpooledDataSource("org.h2.Driver", "jdbc:h2:mem:interceptor_routing;DB_CLOSE_DELAY=-1", "sa", "");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("create table orders (id int, tenant_id bigint)");
+            statement.execute("insert into orders values (1, 1), (2, 1), (3, 2)");
+        }
+        Configuration configuration = new Configuration(new Environment("test", new JdbcTransactionFactory(), dataSource));
+        configuration.addMapper(OrderMapper.class);
+        configuration.addInterceptor(new TenantSqlInterceptor());
+        SqlSessionFactory sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+
+        TenantProperties tenantProperties = new TenantProperties();
+        tenantProperties.setScanMode(TenantProperties.TenantMode.ASSIGN);
+        tenantProperties.setTargetTables(new ArrayList<>(Collections.singletonList("orders")));
+        tenantProperties.setTargetColumns(Collections.singletonList("tenant_id"));
+        AtomicInteger calls = new AtomicInteger();
+        TenantUserIdentity tenantUserIdentity = new TenantUserIdentity() {
+            @Override
+            public Long getTenantUserIdentity() {
+                calls.incrementAndGet();
+                return 1L;
+            }
+        };
+        PluginCache pluginCache = new PluginCache(Collections.singletonList(sqlSessionFactory), tenantProperties, tenantUserIdentity);
+        TenantProperties.Routing routing = new TenantProperties.Routing();
+        routing.setDefaultShard("primary");
+        pluginCache.setTenantShardRouter(new TenantShardRouter(routing, null));
+        pluginCache.publish();
+
+        try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+            assertEquals(2, sqlSession.getMapper(OrderMapper.class).count());
+        }
+        assertEquals(1, calls.get());
+    }
+}
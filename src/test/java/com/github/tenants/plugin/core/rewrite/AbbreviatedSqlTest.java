@@ -0,0 +1,67 @@
+package com.github.tenants.plugin.core.rewrite;
+
+import net.sf.jsqlparser.JSQLParserException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.StringJoiner;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 缩略后改写的结果必须与直接解析改写完整sql的结果一致，否则超长sql会丢失租户条件或参数错位。
+ *
+ * @author xierh
+ * @since 2026/10/20 11:00
+ */
+class AbbreviatedSqlTest {
+
+    private final TenantSqlRewriter rewriter = new TenantSqlRewriter(Collections.singletonList("orders"), "tenant_id", null);
+
+    private static String repeat(String value, int count) {
+        StringJoiner joiner = new StringJoiner(", ");
+        for (int i = 0; i < count; i++) {
+            joiner.add(value);
+        }
+        return joiner.toString();
+    }
+
+    private void assertSameAsFullRewrite(String sql) throws JSQLParserException {
+        AbbreviatedSql abbreviatedSql = AbbreviatedSql.abbreviate(sql);
+        assertNotNull(abbreviatedSql);
+        assertTrue(abbreviatedSql.getSkeleton().length() < 300, abbreviatedSql.getSkeleton());
+        CompiledSql expanded = abbreviatedSql.expand(rewriter.compile(abbreviatedSql.getSkeleton()));
+        assertEquals(rewriter.compile(sql).render(9), expanded.render(9));
+    }
+
+    @Test
+    void inListIsAbbreviated() throws JSQLParserException {
+        assertSameAsFullRewrite("SELECT * FROM orders WHERE id IN (" + repeat("?", 500) + ") AND a = ?");
+        assertSameAsFullRewrite("SELECT * FROM orders o WHERE o.id IN (" + repeat("?", 500) + ") OR o.b IN (" + repeat("'x'", 100) + ")");
+    }
+
+    @Test
+    void valuesRowsAreAbbreviated() throws JSQLParserException {
+        assertSameAsFullRewrite("INSERT INTO orders (a, b) VALUES " + repeat("(?, ?)", 300));
+    }
+
+    @Test
+    void valuesRowsAndInListAreAbbreviatedTogether() throws JSQLParserException {
+        assertSameAsFullRewrite("INSERT INTO orders (a, b) SELECT a, b FROM orders WHERE id IN (" + repeat("?", 200) + ")");
+        assertSameAsFullRewrite("INSERT INTO orders (a, b) VALUES " + repeat("(?, 'in (1)')", 300));
+    }
+
+    @Test
+    void unrelatedSqlIsUnchanged() throws JSQLParserException {
+        String sql = "SELECT * FROM other WHERE id IN (" + repeat("?", 500) + ")";
+        AbbreviatedSql abbreviatedSql = AbbreviatedSql.abbreviate(sql);
+        assertNotNull(abbreviatedSql);
+        assertEquals(sql, abbreviatedSql.expand(rewriter.compile(abbreviatedSql.getSkeleton())).render(9));
+    }
+
+    @Test
+    void quotedAndShortListsAreKept() {
+        assertNull(AbbreviatedSql.abbreviate("SELECT * FROM orders WHERE a = 'in (" + repeat("1", 100) + ")'"));
+        assertNull(AbbreviatedSql.abbreviate("SELECT * FROM orders WHERE id IN (1, 2, 3)"));
+    }
+}
@@ -0,0 +1,53 @@
+package com.github.tenants.plugin.core.rewrite;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link RegexTenantInjector} 只能在确定注入位置正确时注入，其余引用了多租户表的语句必须返回null。
+ *
+ * @author xierh
+ * @since 2026/10/20 10:30
+ */
+class RegexTenantInjectorTest {
+
+    private final RegexTenantInjector injector = new RegexTenantInjector(Collections.singletonList("orders"), Collections.emptyList(), "tenant_id");
+
+    @Test
+    void simpleSelect() {
+        assertEquals("select * from orders o WHERE (o.id = ?) AND o.tenant_id = 7 order by id",
+                injector.inject("select * from orders o where o.id = ? order by id").render(7));
+        assertEquals("select * from orders WHERE orders.tenant_id = 7",
+                injector.inject("select * from orders").render(7));
+    }
+
+    @Test
+    void singleRowInsert() {
+        assertEquals("insert into orders (a, b, tenant_id) VALUES (?, now(), 7)",
+                injector.inject("insert into orders(a, b) values (?, now())").render(7));
+        assertEquals("insert into orders (a, tenant_id) VALUES ('x)y', 7)",
+                injector.inject("insert into orders(a) values ('x)y')").render(7));
+    }
+
+    @Test
+    void insertWithTrailingClauseIsNotInjected() {
+        assertNull(injector.inject("insert into orders(a) values (?) on duplicate key update a = values(a)"));
+        assertNull(injector.inject("insert into orders(a) values (?), (?)"));
+        assertNull(injector.inject("insert into orders(a) values (?"));
+    }
+
+    @Test
+    void complexStatementsAreNotInjected() {
+        assertNull(injector.inject("select * from orders o join item i on i.oid = o.id"));
+        assertNull(injector.inject("select * from orders where id in (select id from orders)"));
+    }
+
+    @Test
+    void statementsWithoutTenantTablesAreUnchanged() {
+        CompiledSql compiledSql = injector.inject("select * from other where id = ?");
+        assertFalse(compiledSql.isTenantAware());
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.tenants.plugin.core.rewrite;
+
+import com.github.tenants.plugin.TenantProperties;
+import com.github.tenants.plugin.cache.SqlRewriteCache;
+import net.sf.jsqlparser.JSQLParserException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link TenantRewriteIndex} 只在生成时的多租户表与字段和运行时完全一致时载入，且只载入带有租户条件的编译结果。
+ *
+ * @author xierh
+ * @since 2026/10/20 12:00
+ */
+class TenantRewriteIndexTest {
+
+    @TempDir
+    Path dir;
+
+    private ClassLoader index(String table) throws IOException, JSQLParserException {
+        TenantSqlRewriter rewriter = new TenantSqlRewriter(Collections.singletonList(table), "tenant_id", null);
+        Map<String, CompiledSql> compiledSqls = new LinkedHashMap<>();
+        compiledSqls.put("select * from orders", rewriter.compile("select * from orders"));
+        compiledSqls.put("select * from ORDERS", rewriter.compile("select * from ORDERS"));
+        Path resource = dir.resolve(TenantRewriteIndex.RESOURCE);
+        Files.createDirectories(resource.getParent());
+        try (OutputStream out = Files.newOutputStream(resource)) {
+            TenantRewriteIndex.store(out, Collections.singletonList(table), "tenant_id", compiledSqls);
+        }
+        return new URLClassLoader(new URL[]{dir.toUri().toURL()}, null);
+    }
+
+    private static TenantProperties properties(String column, String... tables) {
+        TenantProperties tenantProperties = new TenantProperties();
+        tenantProperties.setTargetColumns(Collections.singletonList(column));
+        tenantProperties.setTargetTables(Arrays.asList(tables));
+        return tenantProperties;
+    }
+
+    @Test
+    void onlyTenantAwareEntriesAreLoaded() throws IOException, JSQLParserException {
+        SqlRewriteCache sqlRewriteCache = new SqlRewriteCache(16);
+        assertEquals(1, TenantRewriteIndex.load(index("orders"), properties("tenant_id", "orders"), sqlRewriteCache));
+        assertEquals("SELECT * FROM orders WHERE orders.tenant_id = 3", sqlRewriteCache.get("select * from orders").render(3));
+        // 改写器区分大小写，生成时未改写的sql留给运行时解析
+        assertNull(sqlRewriteCache.get("select * from ORDERS"));
+    }
+
+    @Test
+    void tableCaseMustMatch() throws IOException, JSQLParserException {
+        // 生成时的多租户表为 ORDERS，select * from orders 未被改写；运行时为 orders 时不能载入
+        ClassLoader classLoader = index("ORDERS");
+        assertEquals(0, TenantRewriteIndex.load(classLoader, properties("tenant_id", "orders"), new SqlRewriteCache(16)));
+        assertEquals(0, TenantRewriteIndex.load(classLoader, properties("TENANT_ID", "ORDERS"), new SqlRewriteCache(16)));
+        SqlRewriteCache sqlRewriteCache = new SqlRewriteCache(16);
+        assertEquals(1, TenantRewriteIndex.load(classLoader, properties("tenant_id", "ORDERS"), sqlRewriteCache));
+        assertNull(sqlRewriteCache.get("select * from orders"));
+    }
+
+    @Test
+    void otherTablesOrRewritesSkipTheIndex() throws IOException, JSQLParserException {
+        ClassLoader classLoader = index("orders");
+        assertEquals(0, TenantRewriteIndex.load(classLoader, properties("tenant_id", "orders", "item"), new SqlRewriteCache(16)));
+        assertEquals(0, TenantRewriteIndex.load(classLoader, properties("org_id", "orders"), new SqlRewriteCache(16)));
+        TenantProperties rewrites = properties("tenant_id", "orders");
+        rewrites.setTableRewrites(Collections.singletonMap("orders", new TenantProperties.TableRewrite()));
+        assertEquals(0, TenantRewriteIndex.load(classLoader, rewrites, new SqlRewriteCache(16)));
+    }
+}
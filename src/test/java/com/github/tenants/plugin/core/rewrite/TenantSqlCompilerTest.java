@@ -0,0 +1,92 @@
+package com.github.tenants.plugin.core.rewrite;
+
+import com.github.tenants.plugin.TenantProperties;
+import com.github.tenants.plugin.cache.SqlRewriteCache;
+import com.github.tenants.plugin.ex.TenantException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link TenantSqlCompiler} 的缓存与解析失败处理。
+ *
+ * @author xierh
+ * @since 2026/10/20 10:30
+ */
+class TenantSqlCompilerTest {
+
+    private static final String INVALID = "select * from orders where";
+
+    private TenantSqlCompiler compiler(TenantProperties.Parse parse) {
+        return new TenantSqlCompiler(new TenantSqlRewriter(Collections.singletonList("orders"), "tenant_id", null),
+                new RegexTenantInjector(Collections.singletonList("orders"), Collections.emptyList(), "tenant_id"),
+                new SqlRewriteCache(16), parse);
+    }
+
+    @Test
+    void compiledSqlIsCachedAndCounted() {
+        TenantSqlCompiler compiler = compiler(new TenantProperties.Parse());
+        CompiledSql first = compiler.compile("s", "select * from orders");
+        assertSame(first, compiler.compile("s", "select * from orders"));
+        assertEquals(1, compiler.getSqlRewriteCache().getEntry("select * from orders").getHits());
+        assertEquals("select * from orders", compiler.getStatementSql("s"));
+    }
+
+    @Test
+    void syntaxErrorIsNegativeCachedAndEveryBypassIsCounted() {
+        TenantSqlCompiler compiler = compiler(new TenantProperties.Parse());
+        assertFalse(compiler.compile("s", INVALID).isTenantAware());
+        assertNotNull(compiler.getSqlRewriteCache().getFailure(INVALID));
+        assertFalse(compiler.compile("s", INVALID).isTenantAware());
+        assertEquals(2, compiler.getPassThroughCount());
+    }
+
+    @Test
+    void lengthLimitOnlyFailsTheCurrentExecution() {
+        TenantProperties.Parse parse = new TenantProperties.Parse();
+        parse.setMaxSqlLength(10);
+        TenantSqlCompiler compiler = compiler(parse);
+        assertFalse(compiler.compile("s", "select * from orders").isTenantAware());
+        assertNull(compiler.getSqlRewriteCache().getFailure("select * from orders"));
+        assertEquals(0, compiler.getSqlRewriteCache().size());
+        assertEquals(1, compiler.getPassThroughCount());
+    }
+
+    @Test
+    void timeoutIsNeverNegativeCached() {
+        TenantProperties.Parse parse = new TenantProperties.Parse();
+        parse.setTimeout(1);
+        TenantSqlCompiler compiler = compiler(parse);
+        StringBuilder sql = new StringBuilder("select * from orders where id = ?");
+        for (int i = 0; i < 200; i++) {
+            sql.append(" or (a").append(i).append(" = ? and b").append(i).append(" like concat('%', ?, '%'))");
+        }
+        for (int i = 0; i < 20; i++) {
+            compiler.compile("s", sql.toString());
+        }
+        assertNull(compiler.getSqlRewriteCache().getFailure(sql.toString()));
+    }
+
+    @Test
+    void rejectPolicyThrows() {
+        TenantProperties.Parse parse = new TenantProperties.Parse();
+        parse.setFailurePolicy(TenantProperties.ParseFailurePolicy.REJECT);
+        TenantSqlCompiler compiler = compiler(parse);
+        assertThrows(TenantException.class, () -> compiler.compile("s", INVALID));
+        assertThrows(TenantException.class, () -> compiler.compile("s", INVALID));
+        assertEquals(0, compiler.getPassThroughCount());
+    }
+
+    @Test
+    void regexPolicyIsolatesOrRejects() {
+        TenantProperties.Parse parse = new TenantProperties.Parse();
+        parse.setFailurePolicy(TenantProperties.ParseFailurePolicy.REGEX);
+        TenantSqlCompiler compiler = compiler(parse);
+        assertThrows(TenantException.class, () -> compiler.compile("s", INVALID));
+        String unparsable = "select * from orders where id = ? for update skip locked nowait";
+        assertEquals("select * from orders WHERE (id = ?) AND orders.tenant_id = 3 for update skip locked nowait",
+                compiler.compile("s", unparsable).render(3));
+    }
+}
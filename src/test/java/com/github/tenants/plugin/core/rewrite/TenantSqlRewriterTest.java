@@ -0,0 +1,118 @@
+package com.github.tenants.plugin.core.rewrite;
+
+import com.github.tenants.plugin.TenantProperties;
+import net.sf.jsqlparser.JSQLParserException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link TenantSqlRewriter} 的改写结果，租户条件缺失会直接破坏租户隔离。
+ *
+ * @author xierh
+ * @since 2026/10/20 10:00
+ */
+class TenantSqlRewriterTest {
+
+    private static final long TENANT = 42;
+
+    private final TenantSqlRewriter rewriter = new TenantSqlRewriter(Arrays.asList("orders", "item"), "tenant_id", null);
+
+    private String render(TenantSqlRewriter rewriter, String sql) throws JSQLParserException {
+        return rewriter.compile(sql).render(TENANT);
+    }
+
+    @Test
+    void selectAddsPredicateToFromTable() throws JSQLParserException {
+        assertEquals("SELECT * FROM orders WHERE id = ? AND orders.tenant_id = 42",
+                render(rewriter, "select * from orders where id = ?"));
+        assertEquals("SELECT * FROM orders o WHERE o.tenant_id = 42",
+                render(rewriter, "select * from orders o"));
+    }
+
+    @Test
+    void selectAddsPredicateToJoinedTableAndSubQuery() throws JSQLParserException {
+        assertEquals("SELECT * FROM orders o JOIN item i ON i.oid = o.id AND i.tenant_id = 42 WHERE o.tenant_id = 42",
+                render(rewriter, "select * from orders o join item i on i.oid = o.id"));
+        assertEquals("SELECT * FROM (SELECT * FROM item WHERE item.tenant_id = 42) t",
+                render(rewriter, "select * from (select * from item) t"));
+    }
+
+    @Test
+    void unionRewritesEveryBranch() throws JSQLParserException {
+        assertEquals("SELECT id FROM orders WHERE orders.tenant_id = 42 UNION SELECT id FROM item WHERE item.tenant_id = 42",
+                render(rewriter, "select id from orders union select id from item"));
+    }
+
+    @Test
+    void insertAddsTenantColumn() throws JSQLParserException {
+        assertEquals("INSERT INTO orders (a, b, tenant_id) VALUES (?, ?, 42)",
+                render(rewriter, "insert into orders(a, b) values(?, ?)"));
+        assertEquals("INSERT INTO orders (a, tenant_id) VALUES (1, 42), (2, 42)",
+                render(rewriter, "insert into orders(a) values(1), (2)"));
+    }
+
+    @Test
+    void otherTablesAreUnchanged() throws JSQLParserException {
+        CompiledSql compiledSql = rewriter.compile("select * from other where id = ?");
+        assertFalse(compiledSql.isTenantAware());
+        assertEquals("select * from other where id = ?", compiledSql.render(TENANT));
+    }
+
+    @Test
+    void compiledSqlIsSharedAcrossTenants() throws JSQLParserException {
+        CompiledSql compiledSql = rewriter.compile("select * from orders");
+        assertTrue(compiledSql.isTenantAware());
+        assertEquals("SELECT * FROM orders WHERE orders.tenant_id = 1", compiledSql.render(1));
+        assertEquals("SELECT * FROM orders WHERE orders.tenant_id = 2", compiledSql.render(2));
+    }
+
+    @Test
+    void schemaModeRewritesSchema() throws JSQLParserException {
+        TenantSqlRewriter schemaRewriter = rewriter(TenantProperties.TableRewriteMode.SCHEMA, false);
+        assertEquals("SELECT * FROM tenant_42.orders WHERE id = ?",
+                render(schemaRewriter, "select * from orders where id = ?"));
+    }
+
+    @Test
+    void tableModeKeepsOriginalNameAsAlias() throws JSQLParserException {
+        TenantSqlRewriter tableRewriter = rewriter(TenantProperties.TableRewriteMode.TABLE, false);
+        assertEquals("SELECT orders.id FROM orders_42 orders WHERE orders.id = ?",
+                render(tableRewriter, "select orders.id from orders where orders.id = ?"));
+        assertEquals("UPDATE orders_42 orders SET a = ? WHERE orders.id = ?",
+                render(tableRewriter, "update orders set a = ? where orders.id = ?"));
+    }
+
+    @Test
+    void tableModeDeleteRenamesQualifiedColumns() throws JSQLParserException {
+        TenantSqlRewriter tableRewriter = rewriter(TenantProperties.TableRewriteMode.TABLE, false);
+        assertEquals("DELETE FROM orders_42 WHERE orders_42.id = ?",
+                render(tableRewriter, "delete from orders where orders.id = ?"));
+        assertEquals("DELETE FROM orders_42 WHERE EXISTS (SELECT 1 FROM item WHERE item.oid = orders_42.id)",
+                render(tableRewriter, "delete from orders where exists (select 1 from item where item.oid = orders.id)"));
+        // 子查询中的同名表指向子查询自身，不做处理
+        assertEquals("DELETE FROM orders_42 WHERE id IN (SELECT orders.id FROM orders WHERE orders.a = 1)",
+                render(tableRewriter, "delete from orders where id in (select orders.id from orders where orders.a = 1)"));
+    }
+
+    @Test
+    void predicateIsKeptWhenConfigured() throws JSQLParserException {
+        TenantSqlRewriter tableRewriter = rewriter(TenantProperties.TableRewriteMode.TABLE, true);
+        assertEquals("SELECT * FROM orders_42 orders WHERE orders.tenant_id = 42",
+                render(tableRewriter, "select * from orders"));
+    }
+
+    private TenantSqlRewriter rewriter(TenantProperties.TableRewriteMode mode, boolean predicate) {
+        TenantProperties.TableRewrite tableRewrite = new TenantProperties.TableRewrite();
+        tableRewrite.setMode(mode);
+        tableRewrite.setPredicate(predicate);
+        Map<String, TenantProperties.TableRewrite> tableRewrites = new HashMap<>();
+        tableRewrites.put("orders", tableRewrite);
+        return new TenantSqlRewriter(Collections.singletonList("orders"), "tenant_id", tableRewrites);
+    }
+}
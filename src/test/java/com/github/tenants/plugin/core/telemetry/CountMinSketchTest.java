@@ -0,0 +1,43 @@
+package com.github.tenants.plugin.core.telemetry;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link CountMinSketch} 的估算值不小于真实值，且在宽度足够时接近真实值。
+ *
+ * @author xierh
+ * @since 2026/10/20 15:40
+ */
+class CountMinSketchTest {
+
+    @Test
+    void estimateNeverUnderCounts() {
+        CountMinSketch sketch = new CountMinSketch(16384);
+        for (long key = 1; key <= 2000; key++) {
+            sketch.add(key, key % 7 + 1);
+        }
+        sketch.add(42, 1000);
+        long exceeded = 0;
+        for (long key = 1; key <= 2000; key++) {
+            long actual = key % 7 + 1 + (key == 42 ? 1000 : 0);
+            long estimate = sketch.estimate(key);
+            assertTrue(estimate >= actual, "key " + key);
+            if (estimate > actual) {
+                exceeded++;
+            }
+        }
+        assertEquals(1000 + 42 % 7 + 1, sketch.estimate(42));
+        assertTrue(exceeded < 20, "too many collisions: " + exceeded);
+    }
+
+    @Test
+    void clearResetsCounters() {
+        CountMinSketch sketch = new CountMinSketch(16);
+        sketch.add(1, 5);
+        sketch.clear();
+        assertEquals(0, sketch.estimate(1));
+    }
+}
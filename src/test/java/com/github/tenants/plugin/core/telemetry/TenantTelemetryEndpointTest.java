@@ -0,0 +1,37 @@
+package com.github.tenants.plugin.core.telemetry;
+
+import com.github.tenants.plugin.TenantProperties;
+import com.github.tenants.plugin.cache.PluginCache;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 只开启租户限流时，{@link TenantTelemetryEndpoint} 同样输出限流的统计。
+ *
+ * @author xierh
+ * @since 2026/10/20 16:20
+ */
+class TenantTelemetryEndpointTest {
+
+    @Test
+    void admissionIsReportedWithoutTelemetry() {
+        TenantProperties tenantProperties = new TenantProperties();
+        tenantProperties.setScanMode(TenantProperties.TenantMode.ASSIGN);
+        tenantProperties.setTargetTables(new ArrayList<>(Collections.singletonList("orders")));
+        tenantProperties.setTargetColumns(Collections.singletonList("tenant_id"));
+        tenantProperties.getAdmission().setEnabled(true);
+        new PluginCache(Collections.singletonList(new SqlSessionFactoryBuilder().build(new Configuration())), tenantProperties, null).publish();
+
+        Map<String, Object> result = new TenantTelemetryEndpoint().telemetry();
+        assertEquals(true, result.get("ready"));
+        assertFalse(result.containsKey("count"));
+        assertTrue(result.containsKey("admission"));
+    }
+}
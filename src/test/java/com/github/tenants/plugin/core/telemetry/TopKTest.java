@@ -0,0 +1,52 @@
+package com.github.tenants.plugin.core.telemetry;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * {@link TopK} 只保留估算值最大的若干个key，估算值在替换与读取时重新获取。
+ *
+ * @author xierh
+ * @since 2026/10/20 15:40
+ */
+class TopKTest {
+
+    @Test
+    void keepsLargestEstimates() {
+        Map<String, Long> estimates = new HashMap<>();
+        TopK<String> topK = new TopK<>(2, estimates::get);
+        estimates.put("a", 1L);
+        topK.offer("a");
+        estimates.put("b", 5L);
+        topK.offer("b");
+        estimates.put("c", 3L);
+        topK.offer("c");
+        // 未超过当前最小值的key不会进入记录
+        estimates.put("d", 2L);
+        topK.offer("d");
+        assertEquals(Arrays.asList("b", "c"), topK.keys());
+
+        // 已记录的key不需要再次提交，读取时使用最新的估算值
+        estimates.put("c", 9L);
+        assertEquals(Arrays.asList("c", "b"), topK.keys());
+
+        // 替换时按最新的估算值淘汰最小的记录
+        estimates.put("b", 6L);
+        estimates.put("e", 7L);
+        topK.offer("e");
+        assertEquals(Arrays.asList("c", "e"), topK.keys());
+    }
+
+    @Test
+    void zeroCapacityRecordsNothing() {
+        TopK<String> topK = new TopK<>(0, key -> 1L);
+        topK.offer("a");
+        assertEquals(Collections.emptyList(), topK.keys());
+    }
+}